@@ -0,0 +1,403 @@
+package ma.lsia.certis.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import ma.lsia.certis.dto.AuthResponse;
+import ma.lsia.certis.dto.IntrospectRequest;
+import ma.lsia.certis.dto.IntrospectResponse;
+import ma.lsia.certis.dto.LoginRequest;
+import ma.lsia.certis.dto.PatchUserRequest;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.dto.UpdateUserRequest;
+import ma.lsia.certis.dto.UserResponse;
+import ma.lsia.certis.dto.UserSearchResponse;
+
+/**
+ * Typed client for the Certis API, for JVM services that call it.
+ *
+ * Mirrors AuthController and UserController with the same DTOs. Authenticated calls log in
+ * with the configured credentials on first use, reuse the token until it nears expiry and
+ * renew it through /auth/refresh (see {@link TokenManager}); a 401 triggers one re-login and
+ * a single retry. Built on a single {@link HttpClient}, which pools connections and
+ * negotiates HTTP/2 where available. Blocking calls are cheap on virtual threads. Bodies
+ * are JSON unless another {@link Encoding} is chosen.
+ *
+ * Ships in the plain ma.lsia:certis jar, which services can depend on; the runnable
+ * application is the jar with the exec classifier.
+ *
+ * <pre>
+ * try (CertisClient client = CertisClient.builder(URI.create("http://localhost:8080"))
+ *     .credentials("svc@example.com", secret)
+ *     .build()) {
+ *   UserResponse me = client.getCurrentUser();
+ * }
+ * </pre>
+ */
+public final class CertisClient implements AutoCloseable {
+  // The API answers 403 with this message when the bearer token did not authenticate
+  private static final String NOT_AUTHENTICATED = "User not authenticated";
+
+  private final URI baseUrl;
+  private final HttpClient httpClient;
+  private final Encoding encoding;
+  private final ObjectMapper objectMapper;
+  // Token payloads, and error bodies written outside content negotiation, are always JSON
+  private final ObjectMapper jsonMapper;
+  private final Duration requestTimeout;
+  private final String email;
+  private final String password;
+  private final TokenManager tokens;
+  private final ExecutorService ownedExecutor;
+
+  private CertisClient(Builder builder) {
+    this.baseUrl = builder.baseUrl;
+    this.encoding = builder.encoding;
+    this.objectMapper = builder.objectMapper != null ? builder.objectMapper : encoding.objectMapper();
+    this.jsonMapper = encoding == Encoding.JSON ? objectMapper : Encoding.JSON.objectMapper();
+    this.requestTimeout = builder.requestTimeout;
+    this.email = builder.email;
+    this.password = builder.password;
+
+    Executor executor = builder.executor;
+    this.ownedExecutor = executor == null ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    if (executor == null) {
+      executor = ownedExecutor;
+    }
+
+    this.httpClient = builder.httpClient != null
+        ? builder.httpClient
+        : HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(builder.connectTimeout)
+            .executor(executor)
+            .build();
+    this.tokens = new TokenManager(this::exchangeToken, this::loginWithCredentials, jsonMapper, executor,
+        builder.refreshSkew.toMillis());
+  }
+
+  public static Builder builder(URI baseUrl) {
+    return new Builder(baseUrl);
+  }
+
+  /**
+   * Encoding of request and response bodies. CBOR and Smile carry the same fields as JSON
+   * in fewer bytes and parse faster.
+   */
+  public enum Encoding {
+    JSON("application/json"),
+    CBOR("application/cbor"),
+    SMILE("application/x-jackson-smile");
+
+    private final String mediaType;
+
+    Encoding(String mediaType) {
+      this.mediaType = mediaType;
+    }
+
+    public String mediaType() {
+      return mediaType;
+    }
+
+    ObjectMapper objectMapper() {
+      MapperBuilder<?, ?> builder = switch (this) {
+        case JSON -> JsonMapper.builder();
+        case CBOR -> CBORMapper.builder();
+        case SMILE -> SmileMapper.builder();
+      };
+      return builder
+          .addModule(new JavaTimeModule())
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .build();
+    }
+  }
+
+  // Auth
+
+  public UserResponse register(RegisterRequest request) {
+    return send(encoded("POST", "/auth/register", request), UserResponse.class);
+  }
+
+  /**
+   * Log in with the given credentials and use the token for subsequent calls
+   */
+  public AuthResponse login(LoginRequest request) {
+    AuthResponse response = send(encoded("POST", "/auth/login", request), AuthResponse.class);
+    tokens.set(response.getToken());
+    return response;
+  }
+
+  /**
+   * Revoke the current token on the server and forget it locally
+   */
+  public void logout() {
+    sendAuthenticated(token -> request("POST", "/auth/logout", HttpRequest.BodyPublishers.noBody(), token),
+        Void.class);
+    tokens.clear();
+  }
+
+  public IntrospectResponse introspect(List<String> tokensToCheck) {
+    return send(encoded("POST", "/auth/introspect", new IntrospectRequest(tokensToCheck)), IntrospectResponse.class);
+  }
+
+  /**
+   * The token authenticated calls currently use, obtaining one if needed
+   */
+  public String accessToken() {
+    return tokens.currentToken();
+  }
+
+  // Users
+
+  public UserResponse getCurrentUser() {
+    return sendAuthenticated(token -> request("GET", "/users/me", HttpRequest.BodyPublishers.noBody(), token),
+        UserResponse.class);
+  }
+
+  public UserResponse getUser(long id) {
+    return sendAuthenticated(token -> request("GET", "/users/" + id, HttpRequest.BodyPublishers.noBody(), token),
+        UserResponse.class);
+  }
+
+  /**
+   * Staff only; results carry names and masked emails
+   */
+  public UserSearchResponse searchUsers(String query, int page, int size) {
+    String path = "/users/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+        + "&page=" + page + "&size=" + size;
+    return sendAuthenticated(token -> request("GET", path, HttpRequest.BodyPublishers.noBody(), token),
+        UserSearchResponse.class);
+  }
+
+  public UserResponse updateCurrentUser(UpdateUserRequest request) {
+    byte[] body = encode(request);
+    return sendAuthenticated(
+        token -> request("PUT", "/users/me", HttpRequest.BodyPublishers.ofByteArray(body), token),
+        UserResponse.class);
+  }
+
+  public UserResponse patchCurrentUser(PatchUserRequest request) {
+    byte[] body = encode(request);
+    return sendAuthenticated(
+        token -> request("PATCH", "/users/me", HttpRequest.BodyPublishers.ofByteArray(body), token),
+        UserResponse.class);
+  }
+
+  public void deleteCurrentUser() {
+    sendAuthenticated(token -> request("DELETE", "/users/me", HttpRequest.BodyPublishers.noBody(), token),
+        Void.class);
+    tokens.clear();
+  }
+
+  @Override
+  public void close() {
+    if (ownedExecutor != null) {
+      ownedExecutor.close();
+    }
+  }
+
+  // Plumbing
+
+  private String loginWithCredentials() {
+    if (email == null || password == null) {
+      throw new CertisClientException(401, "No credentials configured for authenticated calls");
+    }
+    return send(encoded("POST", "/auth/login", new LoginRequest(email, password)), AuthResponse.class).getToken();
+  }
+
+  private String exchangeToken(String token) {
+    HttpRequest request = request("POST", "/auth/refresh", HttpRequest.BodyPublishers.ofString(token), null)
+        .header("Content-Type", "text/plain")
+        .header("Accept", encoding.mediaType())
+        .build();
+    return send(request, AuthResponse.class).getToken();
+  }
+
+  private interface RequestFactory {
+    HttpRequest.Builder create(String token);
+  }
+
+  private <T> T sendAuthenticated(RequestFactory factory, Class<T> type) {
+    String token = tokens.currentToken();
+    try {
+      return send(withBodyHeaders(factory.create(token)).build(), type);
+    } catch (CertisClientException e) {
+      if (e.getStatus() != 401 && !(e.getStatus() == 403 && NOT_AUTHENTICATED.equals(e.getMessage()))) {
+        throw e;
+      }
+      // Expired, revoked or unknown to the API: one fresh token, one retry
+      String replacement = tokens.replaceRejected(token);
+      return send(withBodyHeaders(factory.create(replacement)).build(), type);
+    }
+  }
+
+  private HttpRequest.Builder request(String method, String path, HttpRequest.BodyPublisher body, String token) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(baseUrl.resolve(path))
+        .timeout(requestTimeout)
+        .method(method, body);
+    if (token != null) {
+      builder.header("Authorization", "Bearer " + token);
+    }
+    return builder;
+  }
+
+  private HttpRequest encoded(String method, String path, Object body) {
+    return withBodyHeaders(request(method, path, HttpRequest.BodyPublishers.ofByteArray(encode(body)), null))
+        .build();
+  }
+
+  private HttpRequest.Builder withBodyHeaders(HttpRequest.Builder builder) {
+    return builder.header("Content-Type", encoding.mediaType()).header("Accept", encoding.mediaType());
+  }
+
+  private <T> T send(HttpRequest request, Class<T> type) {
+    HttpResponse<byte[]> response;
+    try {
+      response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (IOException e) {
+      throw new CertisClientException("Request to " + request.uri() + " failed", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CertisClientException("Interrupted while calling " + request.uri(), e);
+    }
+
+    if (response.statusCode() >= 400) {
+      throw new CertisClientException(response.statusCode(), errorMessage(response));
+    }
+    if (type == Void.class || response.body().length == 0) {
+      return null;
+    }
+    try {
+      return objectMapper.readValue(response.body(), type);
+    } catch (IOException e) {
+      throw new CertisClientException("Unreadable response from " + request.uri(), e);
+    }
+  }
+
+  // Same precedence as the web client: message, then error, then the bare status
+  private String errorMessage(HttpResponse<byte[]> response) {
+    boolean negotiated = response.headers().firstValue("Content-Type")
+        .map(type -> type.startsWith(encoding.mediaType()))
+        .orElse(false);
+    try {
+      JsonNode body = (negotiated ? objectMapper : jsonMapper).readTree(response.body());
+      if (body != null && body.hasNonNull("message")) {
+        return body.get("message").asText();
+      }
+      if (body != null && body.hasNonNull("error")) {
+        return body.get("error").asText();
+      }
+    } catch (IOException e) {
+      // Neither the chosen encoding nor JSON
+    }
+    return "Request failed with status " + response.statusCode();
+  }
+
+  private byte[] encode(Object body) {
+    try {
+      return objectMapper.writeValueAsBytes(body);
+    } catch (IOException e) {
+      throw new CertisClientException("Could not serialize " + body.getClass().getSimpleName(), e);
+    }
+  }
+
+  public static final class Builder {
+    private final URI baseUrl;
+    private String email;
+    private String password;
+    private Duration refreshSkew = Duration.ofMinutes(5);
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration requestTimeout = Duration.ofSeconds(30);
+    private Executor executor;
+    private HttpClient httpClient;
+    private Encoding encoding = Encoding.JSON;
+    private ObjectMapper objectMapper;
+
+    private Builder(URI baseUrl) {
+      this.baseUrl = Objects.requireNonNull(baseUrl, "baseUrl");
+    }
+
+    /**
+     * Credentials used to log in for authenticated calls, and again whenever a token is refused
+     */
+    public Builder credentials(String email, String password) {
+      this.email = email;
+      this.password = password;
+      return this;
+    }
+
+    /**
+     * How long before expiry the token is renewed in the background (default 5 minutes)
+     */
+    public Builder refreshSkew(Duration refreshSkew) {
+      this.refreshSkew = refreshSkew;
+      return this;
+    }
+
+    public Builder connectTimeout(Duration connectTimeout) {
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    public Builder requestTimeout(Duration requestTimeout) {
+      this.requestTimeout = requestTimeout;
+      return this;
+    }
+
+    /**
+     * Executor for the HTTP client and token renewals (default: a virtual thread per task)
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Use a preconfigured client (proxy, TLS, ...) instead of the default one
+     */
+    public Builder httpClient(HttpClient httpClient) {
+      this.httpClient = httpClient;
+      return this;
+    }
+
+    /**
+     * Body encoding (default JSON)
+     */
+    public Builder encoding(Encoding encoding) {
+      this.encoding = Objects.requireNonNull(encoding, "encoding");
+      return this;
+    }
+
+    /**
+     * Mapper for request and response bodies; it must read and write the chosen encoding
+     */
+    public Builder objectMapper(ObjectMapper objectMapper) {
+      this.objectMapper = objectMapper;
+      return this;
+    }
+
+    public CertisClient build() {
+      return new CertisClient(this);
+    }
+  }
+}
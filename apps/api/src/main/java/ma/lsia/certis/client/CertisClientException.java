@@ -0,0 +1,23 @@
+package ma.lsia.certis.client;
+
+/**
+ * A call made through {@link CertisClient} failed: the API answered with an error status
+ * (status and message are taken from the error body) or could not be reached (status 0).
+ */
+public class CertisClientException extends RuntimeException {
+  private final int status;
+
+  public CertisClientException(int status, String message) {
+    super(message);
+    this.status = status;
+  }
+
+  public CertisClientException(String message, Throwable cause) {
+    super(message, cause);
+    this.status = 0;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
@@ -0,0 +1,167 @@
+package ma.lsia.certis.client;
+
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Caches the access token and renews it through a single-flight operation.
+ *
+ * Whatever the number of concurrent callers, at most one refresh or login is in flight:
+ * the first caller to need one starts it and everybody else joins the same future. A
+ * token entering its refresh window is renewed in the background while callers keep
+ * using it; callers only wait when the token is missing or already expired.
+ */
+class TokenManager {
+  private static final long UNKNOWN_EXPIRY_MILLIS = 60_000L;
+
+  record Token(String value, long expiresAtMillis) {}
+
+  private final Function<String, String> refresher;
+  private final Supplier<String> loginer;
+  private final ObjectMapper objectMapper;
+  private final Executor executor;
+  private final long refreshSkewMillis;
+
+  private final AtomicReference<CompletableFuture<Token>> inFlight = new AtomicReference<>();
+  private volatile Token token;
+
+  /**
+   * @param refresher exchanges a still valid token for a new one (/auth/refresh)
+   * @param loginer obtains a token from the configured credentials (/auth/login)
+   */
+  TokenManager(Function<String, String> refresher, Supplier<String> loginer, ObjectMapper objectMapper,
+      Executor executor, long refreshSkewMillis) {
+    this.refresher = refresher;
+    this.loginer = loginer;
+    this.objectMapper = objectMapper;
+    this.executor = executor;
+    this.refreshSkewMillis = refreshSkewMillis;
+  }
+
+  /**
+   * A token usable for a request right now
+   */
+  String currentToken() {
+    Token current = token;
+    long now = System.currentTimeMillis();
+    if (current != null && now < current.expiresAtMillis()) {
+      if (now >= current.expiresAtMillis() - refreshSkewMillis) {
+        renew(current); // proactive, the current token is still good for this call
+      }
+      return current.value();
+    }
+    return await(renew(current)).value();
+  }
+
+  /**
+   * The API rejected this token (e.g. revoked by a logout elsewhere): drop it and obtain a
+   * new one by logging in again, unless another caller already replaced it.
+   */
+  String replaceRejected(String rejected) {
+    Token current = token;
+    if (current != null && !current.value().equals(rejected)) {
+      return current.value();
+    }
+    token = null;
+    return await(renew(null)).value();
+  }
+
+  void set(String value) {
+    token = value == null ? null : new Token(value, expiresAt(value));
+  }
+
+  void clear() {
+    token = null;
+  }
+
+  /**
+   * Join the renewal in flight or start one. {@code stale} is the token the caller saw:
+   * when a valid one is given it is refreshed, otherwise the client logs in.
+   */
+  private CompletableFuture<Token> renew(Token stale) {
+    while (true) {
+      CompletableFuture<Token> running = inFlight.get();
+      if (running != null) {
+        return running;
+      }
+
+      CompletableFuture<Token> mine = new CompletableFuture<>();
+      if (!inFlight.compareAndSet(null, mine)) {
+        continue;
+      }
+
+      Token current = token;
+      if (current != stale && current != null
+          && System.currentTimeMillis() < current.expiresAtMillis() - refreshSkewMillis) {
+        // Someone renewed it between our read and winning the race
+        inFlight.set(null);
+        mine.complete(current);
+        return mine;
+      }
+
+      // The slot is released before completing, so callers woken by the result who find
+      // the new token already in its refresh window start a new renewal instead of
+      // joining this finished one
+      executor.execute(() -> {
+        try {
+          Token renewed = obtain(stale);
+          token = renewed;
+          inFlight.set(null);
+          mine.complete(renewed);
+        } catch (Throwable e) {
+          inFlight.set(null);
+          mine.completeExceptionally(e);
+        }
+      });
+      return mine;
+    }
+  }
+
+  private Token obtain(Token stale) {
+    if (stale != null && System.currentTimeMillis() < stale.expiresAtMillis()) {
+      try {
+        String refreshed = refresher.apply(stale.value());
+        return new Token(refreshed, expiresAt(refreshed));
+      } catch (CertisClientException e) {
+        // Revoked or otherwise refused, fall back to the credentials
+      }
+    }
+    String fresh = loginer.get();
+    return new Token(fresh, expiresAt(fresh));
+  }
+
+  private static Token await(CompletableFuture<Token> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new CertisClientException("Could not obtain an access token", e.getCause());
+    }
+  }
+
+  // Reads exp from the payload; the signature is the server's business
+  private long expiresAt(String jwt) {
+    try {
+      int first = jwt.indexOf('.');
+      int second = jwt.indexOf('.', first + 1);
+      byte[] payload = Base64.getUrlDecoder().decode(jwt.substring(first + 1, second));
+      JsonNode exp = objectMapper.readTree(payload).get("exp");
+      if (exp != null && exp.canConvertToLong()) {
+        return exp.asLong() * 1000;
+      }
+    } catch (Exception e) {
+      // Not a JWT we can read, treat it as short-lived
+    }
+    return System.currentTimeMillis() + refreshSkewMillis + UNKNOWN_EXPIRY_MILLIS;
+  }
+}
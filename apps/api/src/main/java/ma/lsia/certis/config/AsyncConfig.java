@@ -0,0 +1,46 @@
+package ma.lsia.certis.config;
+
+import java.util.Map;
+
+import org.slf4j.MDC;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * Enables @Async on Boot's application task executor: a thread pool by default, a virtual
+ * thread per task with spring.threads.virtual.enabled=true (bounded by
+ * spring.task.execution.simple.concurrency-limit).
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+  /**
+   * Carries the caller's MDC (request id) over to the thread running the task
+   */
+  @Bean
+  public TaskDecorator mdcTaskDecorator() {
+    return task -> {
+      Map<String, String> context = MDC.getCopyOfContextMap();
+      return () -> {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        if (context != null) {
+          MDC.setContextMap(context);
+        } else {
+          MDC.clear();
+        }
+        try {
+          task.run();
+        } finally {
+          if (previous != null) {
+            MDC.setContextMap(previous);
+          } else {
+            MDC.clear();
+          }
+        }
+      };
+    };
+  }
+}
@@ -0,0 +1,95 @@
+package ma.lsia.certis.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.accept.ContentNegotiationStrategy;
+import org.springframework.web.accept.HeaderContentNegotiationStrategy;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * CBOR and Smile request and response bodies next to JSON, for service-to-service callers.
+ *
+ * Both converters are built from the same Jackson configuration as the JSON one, so a DTO
+ * has the same fields and date format in every encoding. JSON stays first in the converter
+ * list and therefore the answer to a missing or wildcard Accept header, except when the
+ * request body itself is CBOR or Smile: the response then uses the same encoding. Error
+ * bodies pick their encoding with {@link #responseType}, since Spring Data REST resolves
+ * exceptions with its own converter order.
+ */
+@Configuration
+public class BinaryEncodingConfig implements WebMvcConfigurer {
+  public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+  private static final List<MediaType> BINARY = List.of(MediaType.APPLICATION_CBOR, APPLICATION_SMILE);
+  private static final List<MediaType> ENCODINGS = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR,
+      APPLICATION_SMILE);
+
+  // Replace the converters Spring MVC would create with its own defaults, keeping their position
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+  }
+
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+  }
+
+  @Override
+  public void configureContentNegotiation(@NonNull ContentNegotiationConfigurer configurer) {
+    configurer.strategies(List.of(new HeaderContentNegotiationStrategy(), sameAsRequestBody()));
+  }
+
+  /**
+   * The first of JSON, CBOR and Smile the request accepts, JSON if it accepts none of them
+   */
+  public static MediaType responseType(ContentNegotiationManager negotiation, NativeWebRequest request) {
+    try {
+      for (MediaType accepted : negotiation.resolveMediaTypes(request)) {
+        for (MediaType encoding : ENCODINGS) {
+          if (accepted.isCompatibleWith(encoding)) {
+            return encoding;
+          }
+        }
+      }
+    } catch (HttpMediaTypeNotAcceptableException e) {
+      // Malformed Accept header
+    }
+    return MediaType.APPLICATION_JSON;
+  }
+
+  // Only consulted when the Accept header did not narrow the choice
+  private static ContentNegotiationStrategy sameAsRequestBody() {
+    return request -> {
+      String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+      if (contentType != null) {
+        try {
+          MediaType type = MediaType.parseMediaType(contentType);
+          for (MediaType binary : BINARY) {
+            if (binary.equalsTypeAndSubtype(type)) {
+              return List.of(binary);
+            }
+          }
+        } catch (IllegalArgumentException e) {
+          // Unparseable, left to the request body conversion to reject
+        }
+      }
+      return ContentNegotiationStrategy.MEDIA_TYPE_ALL_LIST;
+    };
+  }
+}
@@ -0,0 +1,38 @@
+package ma.lsia.certis.config;
+
+import java.util.Arrays;
+
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+import org.springframework.lang.NonNull;
+
+import ma.lsia.certis.jfr.RepositoryEventInterceptor;
+
+/**
+ * Adds JFR instrumentation to every Spring Data repository proxy.
+ */
+@Configuration
+public class JfrConfig {
+
+  @Bean
+  public static BeanPostProcessor repositoryEventPostProcessor() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        if (bean instanceof Repository<?, ?> && bean instanceof Advised advised && !advised.isFrozen()) {
+          String repository = Arrays.stream(advised.getProxiedInterfaces())
+              .filter(Repository.class::isAssignableFrom)
+              .findFirst()
+              .map(Class::getSimpleName)
+              .orElse(beanName);
+          // First in the chain, so the event covers the transaction interceptor too
+          advised.addAdvice(0, new RepositoryEventInterceptor(repository));
+        }
+        return bean;
+      }
+    };
+  }
+}
@@ -1,5 +1,6 @@
 package ma.lsia.certis.config;
 
+import org.springdoc.core.utils.SpringDocUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,10 +11,16 @@ import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.info.License;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
+import ma.lsia.certis.security.CurrentUser;
 
 @Configuration
 public class OpenApiConfig {
 
+  static {
+    // Resolved from the security context, not part of the HTTP contract
+    SpringDocUtils.getConfig().addAnnotationsToIgnore(CurrentUser.class);
+  }
+
   @Bean
   public OpenAPI customOpenAPI() {
     final String securitySchemeName = "bearerAuth";
@@ -0,0 +1,112 @@
+package ma.lsia.certis.config;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ma.lsia.certis.datasource.ReadYourWritesTracker;
+import ma.lsia.certis.datasource.ReplicaRoutingDataSource;
+
+/**
+ * Primary/replica data source, active only when replica URLs are configured.
+ * Without replicas Spring Boot's single auto-configured pool is used unchanged.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replicas.urls:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+  @Value("${datasource.replicas.urls}")
+  private String replicaUrls;
+
+  @Value("${datasource.replicas.max-lag-ms:1000}")
+  private long maxLagMs;
+
+  @Value("${datasource.replicas.sticky-window-ms:${datasource.replicas.max-lag-ms:1000}}")
+  private long stickyWindowMs;
+
+  @Value("${datasource.replicas.lag-query:}")
+  private String lagQuery;
+
+  private ReplicaRoutingDataSource routingDataSource;
+
+  @Bean(destroyMethod = "close")
+  public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties,
+      Environment environment, MeterRegistry meterRegistry) {
+    MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+    HikariDataSource primary = createPool(properties, properties.determineUrl(),
+        ReplicaRoutingDataSource.PRIMARY, environment, metrics);
+
+    // Comma-separated, like cors.allowed-origins
+    List<String> urls = Arrays.stream(replicaUrls.split(","))
+        .map(String::trim)
+        .filter(url -> !url.isEmpty())
+        .toList();
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    for (int i = 0; i < urls.size(); i++) {
+      String name = "replica-" + (i + 1);
+      replicas.put(name, createPool(properties, urls.get(i), name, environment, metrics));
+    }
+
+    routingDataSource = new ReplicaRoutingDataSource(primary, replicas,
+        new ReadYourWritesTracker(stickyWindowMs), maxLagMs, meterRegistry);
+    return routingDataSource;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+    // Defers the routing decision until the first statement, when the transaction's read-only flag is set
+    return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer replicaHibernateProperties() {
+    // With open-in-view a session lives for the whole request; holding its first connection
+    // until then would send a write that follows a read-only transaction to the replica
+    return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+        PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+  }
+
+  @Scheduled(fixedDelayString = "${datasource.replicas.lag-check-interval-ms:5000}")
+  public void checkReplicaLag() {
+    if (routingDataSource != null) {
+      routingDataSource.refreshReplicaLag(lagQuery);
+    }
+  }
+
+  static HikariDataSource createPool(DataSourceProperties properties, String url, String name,
+      Environment environment, MicrometerMetricsTrackerFactory metrics) {
+    HikariDataSource pool = properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .url(url)
+        .build();
+    // Every pool shares the spring.datasource.hikari.* settings
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+    pool.setPoolName(name);
+    pool.setMetricsTrackerFactory(metrics);
+    return pool;
+  }
+}
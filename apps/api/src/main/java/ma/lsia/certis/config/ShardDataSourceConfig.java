@@ -0,0 +1,90 @@
+package ma.lsia.certis.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ma.lsia.certis.datasource.ShardRoutingDataSource;
+import ma.lsia.certis.datasource.ShardSchemaUpdater;
+
+/**
+ * Sharded user storage, active only when extra shard URLs are configured: shard 0 is
+ * spring.datasource.url, shard i is the i-th datasource.shards.urls entry. Shards are
+ * identified by position, so only ever append to the list.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.shards.urls:}'.isBlank()")
+public class ShardDataSourceConfig {
+
+  @Value("${datasource.shards.urls}")
+  private String shardUrls;
+
+  @Value("${datasource.replicas.urls:}")
+  private String replicaUrls;
+
+  @Bean(destroyMethod = "close")
+  public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, Environment environment,
+      MeterRegistry meterRegistry) {
+    if (!replicaUrls.isBlank()) {
+      throw new IllegalStateException("datasource.shards.urls and datasource.replicas.urls cannot be combined");
+    }
+    MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+    // Comma-separated, like datasource.replicas.urls
+    List<String> urls = new ArrayList<>();
+    urls.add(properties.determineUrl());
+    Arrays.stream(shardUrls.split(","))
+        .map(String::trim)
+        .filter(url -> !url.isEmpty())
+        .forEach(urls::add);
+    List<DataSource> shards = new ArrayList<>();
+    for (int i = 0; i < urls.size(); i++) {
+      shards.add(ReplicaDataSourceConfig.createPool(properties, urls.get(i), ShardRoutingDataSource.name(i),
+          environment, metrics));
+    }
+    return new ShardRoutingDataSource(shards, meterRegistry);
+  }
+
+  @Bean
+  @Primary
+  public DataSource shardedDataSource(ShardRoutingDataSource shardRoutingDataSource) {
+    // Defers the routing decision until the first statement, after ShardContext is set
+    return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+  }
+
+  @Bean
+  public ShardSchemaUpdater shardSchemaUpdater() {
+    return new ShardSchemaUpdater();
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer shardHibernateProperties(ShardSchemaUpdater shardSchemaUpdater) {
+    return properties -> {
+      // With open-in-view a session lives for the whole request; holding its first connection
+      // until then would pin every later transaction of the request to the same shard
+      properties.put(AvailableSettings.CONNECTION_HANDLING,
+          PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+      properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+          (IntegratorProvider) () -> List.of(shardSchemaUpdater));
+    };
+  }
+}
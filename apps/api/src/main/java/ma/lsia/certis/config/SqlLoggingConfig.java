@@ -0,0 +1,49 @@
+package ma.lsia.certis.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+
+import ma.lsia.certis.datasource.SampledQueryLogger;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/**
+ * Replaces spring.jpa.show-sql: the data source the application uses is wrapped
+ * with a listener that logs a sample of statements plus every slow or failed one.
+ */
+@Configuration
+public class SqlLoggingConfig {
+
+  @Bean
+  public static BeanPostProcessor sqlLoggingDataSourcePostProcessor(ConfigurableListableBeanFactory beanFactory,
+      @Value("${logging.sql.sample-rate:0.01}") double sampleRate,
+      @Value("${logging.sql.slow-threshold-ms:200}") long slowThresholdMs) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        // Only the data source handed to JPA; wrapping routing targets too would log statements twice
+        if (bean instanceof DataSource dataSource && isInjectedDataSource(beanFactory, beanName)) {
+          return ProxyDataSourceBuilder.create(dataSource)
+              .name(beanName)
+              .listener(new SampledQueryLogger(sampleRate, slowThresholdMs))
+              .build();
+        }
+        return bean;
+      }
+    };
+  }
+
+  // The @Primary one when replicas or shards add their routing data source, else the only one
+  private static boolean isInjectedDataSource(ConfigurableListableBeanFactory beanFactory, String beanName) {
+    if (!beanFactory.containsBeanDefinition(beanName)) {
+      return false;
+    }
+    return beanFactory.getBeanDefinition(beanName).isPrimary()
+        || beanFactory.getBeanNamesForType(DataSource.class, false, false).length == 1;
+  }
+}
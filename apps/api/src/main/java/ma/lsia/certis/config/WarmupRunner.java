@@ -0,0 +1,178 @@
+package ma.lsia.certis.config;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ma.lsia.certis.dto.AuthResponse;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.dto.UserResponse;
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.security.JwtUtil;
+import ma.lsia.certis.services.UserService;
+
+/**
+ * Exercises the hot request paths before the application reports itself ready.
+ *
+ * Spring Boot only switches readiness to ACCEPTING_TRAFFIC once every ApplicationRunner
+ * has returned, so the readiness probe stays down while this runs. The requests succeed
+ * like real ones: a throwaway user is registered under a unique .invalid address, logs in
+ * and loads itself, and is deleted afterwards. Its logins count towards the login metrics.
+ * If the process dies before the delete, the user is never verified and is purged later.
+ */
+@Component
+public class WarmupRunner implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+  private static final String SYNTHETIC_PASSWORD = "Warmup1!";
+
+  private final ApplicationContext applicationContext;
+  private final JwtUtil jwtUtil;
+  private final PasswordEncoder passwordEncoder;
+  private final ObjectMapper objectMapper;
+  private final UserService userService;
+
+  @Value("${warmup.enabled:true}")
+  private boolean enabled;
+
+  @Value("${warmup.iterations:2000}")
+  private int iterations;
+
+  @Value("${warmup.bcrypt-iterations:5}")
+  private int bcryptIterations;
+
+  @Value("${warmup.repository-iterations:200}")
+  private int repositoryIterations;
+
+  @Value("${warmup.http-iterations:200}")
+  private int httpIterations;
+
+  public WarmupRunner(ApplicationContext applicationContext, JwtUtil jwtUtil, PasswordEncoder passwordEncoder,
+      ObjectMapper objectMapper, UserService userService) {
+    this.applicationContext = applicationContext;
+    this.jwtUtil = jwtUtil;
+    this.passwordEncoder = passwordEncoder;
+    this.objectMapper = objectMapper;
+    this.userService = userService;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!enabled) {
+      return;
+    }
+
+    long started = System.nanoTime();
+    User user = null;
+    try {
+      user = userService.createUser(new RegisterRequest("Warmup", "Synthetic",
+          "warmup-" + UUID.randomUUID() + "@certis.invalid", SYNTHETIC_PASSWORD));
+      warmTokensAndSerialization(user);
+      warmPasswordHashing();
+      warmRepository(user);
+      warmHttpPaths(user);
+    } catch (Exception e) {
+      // A failed warm-up only costs latency, it must not keep the application from starting
+      log.warn("JIT warm-up aborted: {}", e.toString());
+    } finally {
+      if (user != null) {
+        deleteQuietly(user);
+      }
+    }
+    log.info("JIT warm-up finished in {} ms", (System.nanoTime() - started) / 1_000_000);
+  }
+
+  private void warmTokensAndSerialization(User user) throws Exception {
+    for (int i = 0; i < iterations; i++) {
+      String token = jwtUtil.generateToken(user.getEmail(), user.getId());
+      jwtUtil.parseClaims(token);
+
+      AuthResponse response = new AuthResponse(token, UserResponse.fromUser(user));
+      byte[] json = objectMapper.writeValueAsBytes(response);
+      objectMapper.readValue(json, AuthResponse.class);
+    }
+  }
+
+  private void warmPasswordHashing() {
+    // BCrypt is deliberately slow, a handful of rounds is enough to compile its inner loop
+    String hash = passwordEncoder.encode(SYNTHETIC_PASSWORD);
+    for (int i = 0; i < bcryptIterations; i++) {
+      passwordEncoder.matches(SYNTHETIC_PASSWORD, hash);
+    }
+  }
+
+  private void warmRepository(User user) {
+    for (int i = 0; i < repositoryIterations; i++) {
+      userService.getUserByEmail(user.getEmail());
+      userService.getUserById(user.getId());
+    }
+  }
+
+  /**
+   * Loopback requests through the full servlet stack: filters, JwtFilter, MVC and the login.
+   * Logins hash the password, so there are only bcrypt-iterations of them. Skipped when there
+   * is no embedded server (e.g. mock web environments in tests).
+   */
+  private void warmHttpPaths(User user) throws Exception {
+    if (httpIterations <= 0 || !(applicationContext instanceof WebServerApplicationContext webContext)
+        || webContext.getWebServer() == null || webContext.getWebServer().getPort() <= 0) {
+      return;
+    }
+
+    String baseUrl = "http://localhost:" + webContext.getWebServer().getPort();
+    String token = jwtUtil.generateToken(user.getEmail(), user.getId());
+    String loginBody = objectMapper.writeValueAsString(
+        Map.of("email", user.getEmail(), "password", SYNTHETIC_PASSWORD));
+
+    try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build()) {
+      HttpRequest me = HttpRequest.newBuilder(URI.create(baseUrl + "/users/me"))
+          .header("Authorization", "Bearer " + token)
+          .header("X-Request-Id", "warmup")
+          .GET()
+          .build();
+      HttpRequest login = HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+          .header("Content-Type", "application/json")
+          .header("X-Request-Id", "warmup")
+          .POST(HttpRequest.BodyPublishers.ofString(loginBody))
+          .build();
+
+      for (int i = 0; i < httpIterations; i++) {
+        expectOk(client.send(me, HttpResponse.BodyHandlers.discarding()), "/users/me");
+        if (i < bcryptIterations) {
+          expectOk(client.send(login, HttpResponse.BodyHandlers.discarding()), "/auth/login");
+        }
+      }
+    }
+  }
+
+  // Warming the error path instead would leave the success path cold
+  private static void expectOk(HttpResponse<?> response, String path) {
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException(path + " answered " + response.statusCode());
+    }
+  }
+
+  private void deleteQuietly(User user) {
+    try {
+      userService.deleteUser(user.getId());
+    } catch (RuntimeException e) {
+      log.warn("Could not delete warm-up user {}: {}", user.getId(), e.toString());
+    }
+  }
+}
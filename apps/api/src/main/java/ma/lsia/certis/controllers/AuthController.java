@@ -1,10 +1,13 @@
 package ma.lsia.certis.controllers;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,11 +19,14 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.Valid;
 import ma.lsia.certis.dto.AuthResponse;
+import ma.lsia.certis.dto.IntrospectRequest;
+import ma.lsia.certis.dto.IntrospectResponse;
 import ma.lsia.certis.dto.LoginRequest;
 import ma.lsia.certis.dto.RegisterRequest;
 import ma.lsia.certis.dto.UserResponse;
 import ma.lsia.certis.entities.User;
 import ma.lsia.certis.services.AuthService;
+import ma.lsia.certis.services.TokenIntrospectionService;
 import ma.lsia.certis.services.UserService;
 
 @RestController
@@ -29,10 +35,13 @@ import ma.lsia.certis.services.UserService;
 public class AuthController {
   private final UserService userService;
   private final AuthService authService;
+  private final TokenIntrospectionService introspectionService;
 
-  public AuthController(UserService userService, AuthService authService) {
+  public AuthController(UserService userService, AuthService authService,
+      TokenIntrospectionService introspectionService) {
     this.userService = userService;
     this.authService = authService;
+    this.introspectionService = introspectionService;
   }
 
   @Operation(summary = "Register a new user", description = "Create a new user account with email and password")
@@ -70,4 +79,32 @@ public class AuthController {
     AuthResponse response = authService.refreshToken(oldToken);
     return ResponseEntity.ok(response);
   }
+
+  @Operation(summary = "Logout", description = "Revoke the bearer token so it is rejected until it would have expired")
+  @ApiResponses(value = {
+    @ApiResponse(responseCode = "204", description = "Token revoked"),
+    @ApiResponse(responseCode = "401", description = "Missing, invalid or expired token")
+  })
+  @PostMapping("/logout")
+  public ResponseEntity<Void> logout(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+    if (authorization == null || !authorization.startsWith("Bearer ")) {
+      throw new BadCredentialsException("Bearer token is required");
+    }
+    authService.logout(authorization.substring(7));
+    return ResponseEntity.noContent().build();
+  }
+
+  @Operation(summary = "Introspect tokens",
+    description = "Verify a batch of JWT tokens and return, in request order, whether each is active along with its claims")
+  @ApiResponses(value = {
+    @ApiResponse(responseCode = "200", description = "Tokens introspected",
+      content = @Content(schema = @Schema(implementation = IntrospectResponse.class))),
+    @ApiResponse(responseCode = "400", description = "Empty or oversized batch")
+  })
+  @PostMapping("/introspect")
+  public ResponseEntity<IntrospectResponse> introspect(@Valid @NonNull @RequestBody IntrospectRequest request) {
+    IntrospectResponse response = introspectionService.introspect(request.getTokens());
+    return ResponseEntity.ok(response);
+  }
 }
@@ -0,0 +1,36 @@
+package ma.lsia.certis.controllers;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import ma.lsia.certis.security.JwtKeyStore;
+
+@RestController
+@Tag(name = "Keys", description = "Public keys for verifying tokens")
+public class JwksController {
+  // Short enough for verifiers to pick up a newly published key before it starts signing
+  private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+  private final JwtKeyStore keyStore;
+
+  public JwksController(JwtKeyStore keyStore) {
+    this.keyStore = keyStore;
+  }
+
+  @Operation(summary = "JSON Web Key Set",
+      description = "Public keys tokens are signed with, selected by the kid header of a token")
+  @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> jwks() {
+    return ResponseEntity.ok()
+        .cacheControl(CacheControl.maxAge(MAX_AGE).cachePublic())
+        .body(keyStore.jwks());
+  }
+}
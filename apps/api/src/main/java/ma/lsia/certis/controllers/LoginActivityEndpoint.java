@@ -0,0 +1,47 @@
+package ma.lsia.certis.controllers;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import ma.lsia.certis.services.LoginAnalytics;
+
+/**
+ * Login activity for operators, at /actuator/logins and for admins only (see SecurityConfig).
+ * Without parameters: daily, weekly and monthly figures ending today; with from and to (ISO
+ * dates, inclusive, UTC): that range.
+ * Bad parameters surface as IllegalArgumentException, a 400 from GlobalExceptionHandler.
+ */
+@Component
+@Endpoint(id = "logins")
+public class LoginActivityEndpoint {
+  private final LoginAnalytics loginAnalytics;
+
+  public LoginActivityEndpoint(LoginAnalytics loginAnalytics) {
+    this.loginAnalytics = loginAnalytics;
+  }
+
+  @ReadOperation
+  public Object activity(@Nullable String from, @Nullable String to) {
+    if (from == null && to == null) {
+      return loginAnalytics.summary();
+    }
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    LocalDate start = from == null ? today : parse("from", from);
+    LocalDate end = to == null ? today : parse("to", to);
+    return loginAnalytics.activity(start, end);
+  }
+
+  private static LocalDate parse(String name, String value) {
+    try {
+      return LocalDate.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException(name + " must be an ISO date such as 2025-01-31");
+    }
+  }
+}
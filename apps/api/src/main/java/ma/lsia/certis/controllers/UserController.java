@@ -1,13 +1,20 @@
 package ma.lsia.certis.controllers;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -17,13 +24,21 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import ma.lsia.certis.dto.PatchUserRequest;
 import ma.lsia.certis.dto.UpdateUserRequest;
 import ma.lsia.certis.dto.UserResponse;
+import ma.lsia.certis.dto.UserSearchResponse;
 import ma.lsia.certis.entities.User;
+import ma.lsia.certis.exception.ResourceNotFoundException;
 import ma.lsia.certis.exception.UnauthorizedException;
+import ma.lsia.certis.security.AuthenticatedUser;
+import ma.lsia.certis.security.CurrentUser;
+import ma.lsia.certis.services.AvatarService;
 import ma.lsia.certis.services.UserService;
-import ma.lsia.certis.util.SecurityUtil;
+import ma.lsia.certis.util.FileResponseWriter;
 
 @RestController
 @RequestMapping("/users")
@@ -31,10 +46,15 @@ import ma.lsia.certis.util.SecurityUtil;
 @SecurityRequirement(name = "bearerAuth")
 public class UserController {
   
+  private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+  private static final String REVALIDATE = "no-cache";
+
   private final UserService userService;
+  private final AvatarService avatarService;
 
-  public UserController(UserService userService) {
+  public UserController(UserService userService, AvatarService avatarService) {
     this.userService = userService;
+    this.avatarService = avatarService;
   }
 
   /**
@@ -47,17 +67,36 @@ public class UserController {
     @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing JWT token")
   })
   @GetMapping("/me")
-  public ResponseEntity<UserResponse> getCurrentUser() {
-    String userEmail = SecurityUtil.getCurrentUserEmail();
-    if (userEmail == null) {
-      throw new UnauthorizedException("User not authenticated");
-    }
-    
-    User user = userService.getUserByEmail(userEmail)
-        .orElseThrow(() -> new UnauthorizedException("User not found"));
+  public ResponseEntity<UserResponse> getCurrentUser(@CurrentUser User user) {
     return ResponseEntity.ok(UserResponse.fromUser(user));
   }
 
+  /**
+   * Search users by partial name or email (staff only, see SecurityConfig)
+   */
+  @Operation(summary = "Search users",
+      description = "Ranked search by partial first name, last name or email; staff only, emails are masked")
+  @ApiResponses(value = {
+    @ApiResponse(responseCode = "200", description = "Search results",
+      content = @Content(schema = @Schema(implementation = UserSearchResponse.class))),
+    @ApiResponse(responseCode = "400", description = "Invalid query or paging parameters"),
+    @ApiResponse(responseCode = "403", description = "Not authenticated as staff")
+  })
+  @GetMapping("/search")
+  public ResponseEntity<UserSearchResponse> searchUsers(
+      @RequestParam String q,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "20") int size) {
+    if (q.isBlank()) {
+      throw new IllegalArgumentException("Search query must not be blank");
+    }
+    if (page < 0 || size < 1 || size > 100) {
+      throw new IllegalArgumentException("Page must be >= 0 and size between 1 and 100");
+    }
+
+    return ResponseEntity.ok(userService.searchUsers(q, page, size));
+  }
+
   /**
    * Get user by ID (owner-only)
    */
@@ -69,17 +108,9 @@ public class UserController {
     @ApiResponse(responseCode = "404", description = "User not found")
   })
   @GetMapping("/{id}")
-  public ResponseEntity<UserResponse> getUserById(@PathVariable @NonNull Long id) {
-    String currentUserEmail = SecurityUtil.getCurrentUserEmail();
-    if (currentUserEmail == null) {
-      throw new UnauthorizedException("User not authenticated");
-    }
-    
-    User user = userService.getUserById(id)
-        .orElseThrow(() -> new UnauthorizedException("User not found"));
-    
-    // Only allow users to view their own profile
-    if (!user.getEmail().equals(currentUserEmail)) {
+  public ResponseEntity<UserResponse> getUserById(@PathVariable @NonNull Long id, @CurrentUser User user) {
+    // Only allow users to view their own profile, which this request has already loaded
+    if (!user.getId().equals(id)) {
       throw new UnauthorizedException("You can only view your own profile");
     }
     
@@ -97,19 +128,8 @@ public class UserController {
     @ApiResponse(responseCode = "401", description = "Unauthorized")
   })
   @PutMapping("/me")
-  public ResponseEntity<UserResponse> updateCurrentUser(@Valid @NonNull @RequestBody UpdateUserRequest request) {
-    String userEmail = SecurityUtil.getCurrentUserEmail();
-    if (userEmail == null) {
-      throw new UnauthorizedException("User not authenticated");
-    }
-    
-    User user = userService.getUserByEmail(userEmail)
-        .orElseThrow(() -> new UnauthorizedException("User not found"));
-
-    if (user == null) {
-      throw new UnauthorizedException("User not found");
-    }
-    
+  public ResponseEntity<UserResponse> updateCurrentUser(@Valid @NonNull @RequestBody UpdateUserRequest request,
+      @CurrentUser User user) {
     // Update user fields
     if (request.getFirstName() != null) {
       user.setFirstName(request.getFirstName());
@@ -122,6 +142,25 @@ public class UserController {
     return ResponseEntity.ok(UserResponse.fromUser(updatedUser));
   }
 
+  /**
+   * Partially update current user profile with optimistic locking
+   */
+  @Operation(summary = "Patch user profile",
+    description = "Update only the provided fields; the request must carry the version of the profile it was based on")
+  @ApiResponses(value = {
+    @ApiResponse(responseCode = "200", description = "Profile updated successfully",
+      content = @Content(schema = @Schema(implementation = UserResponse.class))),
+    @ApiResponse(responseCode = "400", description = "Invalid input"),
+    @ApiResponse(responseCode = "401", description = "Unauthorized"),
+    @ApiResponse(responseCode = "409", description = "Profile was modified by another request")
+  })
+  @PatchMapping("/me")
+  public ResponseEntity<UserResponse> patchCurrentUser(@Valid @NonNull @RequestBody PatchUserRequest request,
+      @CurrentUser User user) {
+    User patchedUser = userService.patchUser(user, request);
+    return ResponseEntity.ok(UserResponse.fromUser(patchedUser));
+  }
+
   /**
    * Delete current user account
    */
@@ -131,21 +170,67 @@ public class UserController {
     @ApiResponse(responseCode = "401", description = "Unauthorized")
   })
   @DeleteMapping("/me")
-  public ResponseEntity<Void> deleteCurrentUser() {
-    String userEmail = SecurityUtil.getCurrentUserEmail();
-    if (userEmail == null) {
-      throw new UnauthorizedException("User not authenticated");
-    }
-    
-    User user = userService.getUserByEmail(userEmail)
-        .orElseThrow(() -> new UnauthorizedException("User not found"));
+  public ResponseEntity<Void> deleteCurrentUser(@CurrentUser AuthenticatedUser currentUser) {
+    userService.deleteUser(currentUser.id());
+    return ResponseEntity.noContent().build();
+  }
 
-    Long userId = user.getId();
-    if (userId == null) {
-      throw new UnauthorizedException("User ID not found");
+  /**
+   * Upload or replace the current user's avatar
+   */
+  @Operation(summary = "Upload avatar",
+    description = "Send the raw image as the request body with its Content-Type (PNG, JPEG, GIF or WebP)")
+  @ApiResponses(value = {
+    @ApiResponse(responseCode = "200", description = "Avatar stored",
+      content = @Content(schema = @Schema(implementation = UserResponse.class))),
+    @ApiResponse(responseCode = "401", description = "Unauthorized"),
+    @ApiResponse(responseCode = "413", description = "Image too large"),
+    @ApiResponse(responseCode = "415", description = "Not a supported image type")
+  })
+  @PutMapping("/me/avatar")
+  public ResponseEntity<UserResponse> uploadAvatar(@CurrentUser User user, HttpServletRequest request)
+      throws IOException {
+    // Streamed straight from the socket to disk, the body is never held in memory
+    String hash = avatarService.store(request.getInputStream(), request.getContentType(),
+        request.getContentLengthLong());
+    userService.updateAvatarHash(user.getId(), hash);
+
+    UserResponse response = UserResponse.fromUser(user);
+    response.setAvatarHash(hash);
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Serve a user's avatar. Public, since image tags cannot send a bearer token.
+   * Requested as {@code ?v=<avatarHash>} the response may be cached forever: a new avatar
+   * has a new hash and therefore a new URL.
+   */
+  @Operation(summary = "Get avatar",
+    description = "Supports byte ranges and If-None-Match; pass v=<avatarHash> for an immutable, cacheable URL")
+  @ApiResponses(value = {
+    @ApiResponse(responseCode = "200", description = "Avatar image"),
+    @ApiResponse(responseCode = "206", description = "Requested byte range"),
+    @ApiResponse(responseCode = "304", description = "Not modified"),
+    @ApiResponse(responseCode = "404", description = "User or avatar not found")
+  })
+  @GetMapping("/{id}/avatar")
+  public void getAvatar(@PathVariable @NonNull Long id, @RequestParam(required = false) String v,
+      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String hash = userService.getUserById(id)
+        .map(User::getAvatarHash)
+        .orElseThrow(() -> new ResourceNotFoundException("Avatar not found"));
+
+    Path file = avatarService.locate(hash);
+    long length;
+    String contentType;
+    try {
+      length = Files.size(file);
+      contentType = avatarService.contentType(file);
+    } catch (NoSuchFileException e) {
+      throw new ResourceNotFoundException("Avatar not found");
     }
-    
-    userService.deleteUser(userId);
-    return ResponseEntity.noContent().build();
+
+    FileResponseWriter.write(request, response, file, length, contentType, "\"" + hash + "\"",
+        hash.equals(v) ? IMMUTABLE : REVALIDATE);
   }
 }
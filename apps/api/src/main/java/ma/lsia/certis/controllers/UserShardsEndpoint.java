@@ -0,0 +1,68 @@
+package ma.lsia.certis.controllers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import ma.lsia.certis.services.UserService;
+import ma.lsia.certis.services.UserShardRebalancer;
+import ma.lsia.certis.services.UserShards;
+
+/**
+ * User shards for operators, at /actuator/shards and for admins only (see SecurityConfig).
+ * GET shows buckets and users per shard and the state of the last rebalance; POST starts
+ * one, either evening out bucket counts (empty body, e.g. after adding a shard) or moving
+ * one bucket ({"bucket": 12, "shard": 3}).
+ */
+@Component
+@Endpoint(id = "shards")
+public class UserShardsEndpoint {
+  private final UserShards shards;
+  private final UserShardRebalancer rebalancer;
+  private final UserService userService;
+
+  public UserShardsEndpoint(UserShards shards, UserShardRebalancer rebalancer, UserService userService) {
+    this.shards = shards;
+    this.rebalancer = rebalancer;
+    this.userService = userService;
+  }
+
+  @ReadOperation
+  public Map<String, Object> shards() {
+    int[] buckets = shards.bucketsPerShard();
+    List<Long> users = userService.countUsersPerShard();
+    List<Map<String, Object>> perShard = new ArrayList<>();
+    for (int shard = 0; shard < buckets.length; shard++) {
+      Map<String, Object> entry = new LinkedHashMap<>();
+      entry.put("shard", shard);
+      entry.put("buckets", buckets[shard]);
+      entry.put("users", users.get(shard));
+      perShard.add(entry);
+    }
+
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("shards", perShard);
+    body.put("movingBuckets", shards.movingBuckets());
+    body.put("rebalance", rebalancer.getProgress());
+    return body;
+  }
+
+  @WriteOperation
+  public UserShardRebalancer.Progress rebalance(@Nullable Integer bucket, @Nullable Integer shard) {
+    if ((bucket == null) != (shard == null)) {
+      throw new IllegalArgumentException("Give both bucket and shard, or neither to even out the shards");
+    }
+    Map<Integer, Integer> moves = bucket == null ? rebalancer.plan() : Map.of(bucket, shard);
+    if (moves.isEmpty()) {
+      return rebalancer.getProgress();
+    }
+    return rebalancer.start(moves);
+  }
+}
@@ -0,0 +1,57 @@
+package ma.lsia.certis.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import ma.lsia.certis.util.SecurityUtil;
+
+/**
+ * Remembers recent writes so that the reads following them are not served by a lagging replica.
+ *
+ * A write pins the rest of the current request to the primary, and pins the authenticated
+ * user to the primary for the sticky window on their following requests.
+ */
+public class ReadYourWritesTracker {
+  private static final String REQUEST_ATTRIBUTE = ReadYourWritesTracker.class.getName() + ".WROTE";
+  private static final int PRUNE_THRESHOLD = 10_000;
+
+  private final long stickyWindowMs;
+  private final Map<String, Long> lastWriteByUser = new ConcurrentHashMap<>();
+
+  public ReadYourWritesTracker(long stickyWindowMs) {
+    this.stickyWindowMs = stickyWindowMs;
+  }
+
+  public void recordWrite() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes != null) {
+      attributes.setAttribute(REQUEST_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    String user = SecurityUtil.getCurrentUserEmail();
+    if (user != null && stickyWindowMs > 0) {
+      long now = System.currentTimeMillis();
+      lastWriteByUser.put(user, now);
+      if (lastWriteByUser.size() > PRUNE_THRESHOLD) {
+        lastWriteByUser.values().removeIf(writtenAt -> now - writtenAt > stickyWindowMs);
+      }
+    }
+  }
+
+  public boolean mustReadPrimary() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes != null && attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+      return true;
+    }
+
+    String user = SecurityUtil.getCurrentUserEmail();
+    if (user == null) {
+      return false;
+    }
+    Long writtenAt = lastWriteByUser.get(user);
+    return writtenAt != null && System.currentTimeMillis() - writtenAt <= stickyWindowMs;
+  }
+}
@@ -0,0 +1,149 @@
+package ma.lsia.certis.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ *
+ * Replicas are used round-robin, skipping any whose last measured lag exceeds the
+ * tolerance or that failed their last check. Reads fall back to the primary when no
+ * replica qualifies or when {@link ReadYourWritesTracker} pins the caller to it.
+ * Must be wrapped in a LazyConnectionDataSourceProxy so that the lookup key is
+ * resolved after the transaction's read-only flag is known.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+  public static final String PRIMARY = "primary";
+  private static final long UNREACHABLE = -1L;
+
+  private final DataSource primary;
+  private final Map<String, DataSource> replicas;
+  private final List<String> replicaKeys;
+  private final ReadYourWritesTracker writeTracker;
+  private final long maxLagMs;
+  private final Map<String, Long> lagByReplica = new ConcurrentHashMap<>();
+  private final Map<String, Counter> routedByTarget = new HashMap<>();
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+      ReadYourWritesTracker writeTracker, long maxLagMs, MeterRegistry meterRegistry) {
+    this.primary = primary;
+    this.replicas = replicas;
+    this.replicaKeys = List.copyOf(replicas.keySet());
+    this.writeTracker = writeTracker;
+    this.maxLagMs = maxLagMs;
+
+    Map<Object, Object> targets = new HashMap<>(replicas);
+    targets.put(PRIMARY, primary);
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(primary);
+
+    routedByTarget.put(PRIMARY, Counter.builder("certis.datasource.routed")
+        .description("Connections handed out per routing target")
+        .tag("target", PRIMARY)
+        .register(meterRegistry));
+    for (String key : replicaKeys) {
+      lagByReplica.put(key, 0L);
+      routedByTarget.put(key, Counter.builder("certis.datasource.routed")
+          .description("Connections handed out per routing target")
+          .tag("target", key)
+          .register(meterRegistry));
+      Gauge.builder("certis.datasource.replica.lag", lagByReplica, lags -> lags.getOrDefault(key, UNREACHABLE))
+          .description("Last measured replication lag in milliseconds, -1 when unreachable")
+          .tag("target", key)
+          .baseUnit("milliseconds")
+          .register(meterRegistry);
+    }
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    String target = resolveTarget();
+    routedByTarget.get(target).increment();
+    return target;
+  }
+
+  private String resolveTarget() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      writeTracker.recordWrite();
+      return PRIMARY;
+    }
+    if (writeTracker.mustReadPrimary()) {
+      return PRIMARY;
+    }
+
+    int size = replicaKeys.size();
+    int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+    for (int i = 0; i < size; i++) {
+      String key = replicaKeys.get((start + i) % size);
+      long lag = lagByReplica.getOrDefault(key, UNREACHABLE);
+      if (lag != UNREACHABLE && lag <= maxLagMs) {
+        return key;
+      }
+    }
+    return PRIMARY;
+  }
+
+  /**
+   * Measure every replica with the given query, which must return the lag in milliseconds.
+   * A blank query only checks that the replica answers and treats it as up to date.
+   */
+  public void refreshReplicaLag(String lagQuery) {
+    String sql = lagQuery == null || lagQuery.isBlank() ? "SELECT 0" : lagQuery;
+    for (String key : replicaKeys) {
+      long lag;
+      try (Connection connection = replicas.get(key).getConnection();
+          Statement statement = connection.createStatement();
+          ResultSet rs = statement.executeQuery(sql)) {
+        lag = rs.next() ? Math.max(0L, rs.getLong(1)) : 0L;
+      } catch (Exception e) {
+        lag = UNREACHABLE;
+      }
+
+      Long previous = lagByReplica.put(key, lag);
+      boolean wasEligible = previous != null && previous != UNREACHABLE && previous <= maxLagMs;
+      boolean isEligible = lag != UNREACHABLE && lag <= maxLagMs;
+      if (wasEligible != isEligible) {
+        log.warn("Replica {} {} read rotation (lag {} ms, tolerance {} ms)",
+            key, isEligible ? "rejoined" : "removed from", lag, maxLagMs);
+      }
+    }
+  }
+
+  public List<String> getReplicaKeys() {
+    return replicaKeys;
+  }
+
+  @Override
+  public void close() {
+    List<DataSource> pools = new ArrayList<>(replicas.values());
+    pools.add(primary);
+    for (DataSource pool : pools) {
+      if (pool instanceof HikariDataSource hikari) {
+        hikari.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package ma.lsia.certis.datasource;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+/**
+ * Logs SQL statements with their bound parameters, but only a sample of them.
+ *
+ * Statements slower than the threshold and failed statements are always logged at WARN,
+ * a random fraction of the rest at INFO. The entry is built on the calling thread, but only
+ * for statements that are logged; the rest cost a random draw. Text and binary parameters
+ * are redacted, since the users table binds emails, names and password hashes; numbers,
+ * dates and nulls are shown.
+ */
+public class SampledQueryLogger implements QueryExecutionListener {
+  private static final Logger log = LoggerFactory.getLogger(SampledQueryLogger.class);
+
+  private static final String REDACTED = "***";
+
+  private final double sampleRate;
+  private final long slowThresholdMs;
+  private final DefaultQueryLogEntryCreator entryCreator = new RedactingEntryCreator();
+
+  public SampledQueryLogger(double sampleRate, long slowThresholdMs) {
+    this.sampleRate = sampleRate;
+    this.slowThresholdMs = slowThresholdMs;
+  }
+
+  @Override
+  public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+  }
+
+  @Override
+  public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    if (!execInfo.isSuccess() || execInfo.getElapsedTime() >= slowThresholdMs) {
+      if (log.isWarnEnabled()) {
+        log.warn("{}", entry(execInfo, queryInfoList));
+      }
+      return;
+    }
+
+    if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate && log.isInfoEnabled()) {
+      log.info("{}", entry(execInfo, queryInfoList));
+    }
+  }
+
+  String entry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    return entryCreator.getLogEntry(execInfo, queryInfoList, false, false, false);
+  }
+
+  private static class RedactingEntryCreator extends DefaultQueryLogEntryCreator {
+    @Override
+    protected String getParameterValueToDisplay(ParameterSetOperation param) {
+      Object[] args = param.getArgs();
+      Object value = args.length > 1 ? args[1] : null;
+      if (value instanceof CharSequence || value instanceof byte[] || value instanceof char[]) {
+        return REDACTED;
+      }
+      return super.getParameterValueToDisplay(param);
+    }
+  }
+}
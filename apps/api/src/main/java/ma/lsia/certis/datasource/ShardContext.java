@@ -0,0 +1,48 @@
+package ma.lsia.certis.datasource;
+
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The shard the current thread's next connection is taken from; shard 0 when none is set.
+ *
+ * Set it before a transaction starts: a transaction keeps the connection it began with, so
+ * switching shards inside one is refused rather than silently ignored.
+ */
+public final class ShardContext {
+  private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+  private ShardContext() {
+  }
+
+  public static int current() {
+    Integer shard = CURRENT.get();
+    return shard == null ? 0 : shard;
+  }
+
+  public static <T> T call(int shard, Supplier<T> work) {
+    Integer previous = CURRENT.get();
+    int active = previous == null ? 0 : previous;
+    if (shard != active && TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("Cannot use shard " + shard + " inside a transaction on shard " + active);
+    }
+    CURRENT.set(shard);
+    try {
+      return work.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  public static void run(int shard, Runnable work) {
+    call(shard, () -> {
+      work.run();
+      return null;
+    });
+  }
+}
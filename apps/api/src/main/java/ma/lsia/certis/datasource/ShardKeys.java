@@ -0,0 +1,45 @@
+package ma.lsia.certis.datasource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+
+/**
+ * How users map to shards, and the layout of their ids.
+ *
+ * A user belongs to one of {@link #BUCKETS} buckets, chosen by a hash of the normalized
+ * email, and each bucket is assigned to a shard. Ids are laid out as
+ * {@code [47 bits sequence][6 bits origin shard][10 bits bucket]}: the bucket lets an id
+ * be routed without a lookup, and the sequence of the shard that created the row, qualified
+ * by that shard's number, keeps ids unique when buckets later move between shards.
+ *
+ * Users created before sharding kept their IDENTITY ids, which do not follow this layout;
+ * the rebalancer refuses to move buckets while such users exist.
+ */
+public final class ShardKeys {
+  public static final int BUCKET_BITS = 10;
+  public static final int BUCKETS = 1 << BUCKET_BITS;
+  public static final int ORIGIN_BITS = 6;
+  public static final int MAX_SHARDS = 1 << ORIGIN_BITS;
+
+  private ShardKeys() {
+  }
+
+  public static int bucketOf(String email) {
+    CRC32C crc = new CRC32C();
+    crc.update(email.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+    return (int) (crc.getValue() % BUCKETS);
+  }
+
+  public static int bucketOf(long userId) {
+    return (int) (userId & (BUCKETS - 1));
+  }
+
+  public static long sequenceOf(long userId) {
+    return userId >>> (ORIGIN_BITS + BUCKET_BITS);
+  }
+
+  public static long userId(long sequence, int originShard, int bucket) {
+    return sequence << (ORIGIN_BITS + BUCKET_BITS) | (long) originShard << BUCKET_BITS | bucket;
+  }
+}
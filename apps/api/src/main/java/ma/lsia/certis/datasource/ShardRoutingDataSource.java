@@ -0,0 +1,82 @@
+package ma.lsia.certis.datasource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out connections of the shard set in {@link ShardContext}, shard 0 by default.
+ *
+ * Shard 0 is the primary database and keeps every table but users; the users table is
+ * spread over all shards. Like ReplicaRoutingDataSource it must be wrapped in a
+ * LazyConnectionDataSourceProxy, so that the shard is resolved at the first statement.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+  private final List<DataSource> shards;
+  private final List<Counter> routedByShard;
+
+  public ShardRoutingDataSource(List<DataSource> shards, MeterRegistry meterRegistry) {
+    if (shards.size() > ShardKeys.MAX_SHARDS) {
+      throw new IllegalArgumentException("At most " + ShardKeys.MAX_SHARDS + " shards are supported");
+    }
+    this.shards = List.copyOf(shards);
+
+    Map<Object, Object> targets = new HashMap<>();
+    for (int i = 0; i < shards.size(); i++) {
+      targets.put(i, shards.get(i));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(shards.get(0));
+
+    this.routedByShard = IntStream.range(0, shards.size())
+        .mapToObj(i -> Counter.builder("certis.datasource.routed")
+            .description("Connections handed out per routing target")
+            .tag("target", name(i))
+            .register(meterRegistry))
+        .toList();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    int shard = ShardContext.current();
+    if (shard >= shards.size()) {
+      throw new IllegalStateException("No shard " + shard + ", " + shards.size() + " configured");
+    }
+    routedByShard.get(shard).increment();
+    return shard;
+  }
+
+  public int getShardCount() {
+    return shards.size();
+  }
+
+  /**
+   * The pool of one shard, bypassing routing
+   */
+  public DataSource getShard(int shard) {
+    return shards.get(shard);
+  }
+
+  public static String name(int shard) {
+    return "shard-" + shard;
+  }
+
+  @Override
+  public void close() {
+    for (DataSource pool : shards) {
+      if (pool instanceof HikariDataSource hikari) {
+        hikari.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package ma.lsia.certis.datasource;
+
+import java.util.HashMap;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+
+/**
+ * Applies spring.jpa.hibernate.ddl-auto to the shards past the first. Hibernate only manages
+ * the schema of the connection it boots with, which is shard 0; every shard gets the full
+ * schema, of which only the users table is used outside shard 0.
+ */
+public class ShardSchemaUpdater implements Integrator {
+  private volatile Metadata metadata;
+  private volatile SessionFactoryImplementor sessionFactory;
+
+  @Override
+  public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+      SessionFactoryImplementor sessionFactory) {
+    this.metadata = metadata;
+    this.sessionFactory = sessionFactory;
+  }
+
+  @Override
+  public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    this.metadata = null;
+    this.sessionFactory = null;
+  }
+
+  public void update(int shard) {
+    if (metadata == null) {
+      throw new IllegalStateException("Hibernate has not started yet");
+    }
+    // Drops at shutdown (create-drop) are left to shard 0's own schema management
+    ShardContext.run(shard, () -> SchemaManagementToolCoordinator.process(metadata,
+        sessionFactory.getServiceRegistry(), new HashMap<>(sessionFactory.getProperties()), action -> { }));
+  }
+}
@@ -0,0 +1,21 @@
+package ma.lsia.certis.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IntrospectRequest {
+  @NotEmpty(message = "At least one token is required")
+  @Size(max = 100, message = "At most 100 tokens can be introspected per request")
+  private List<@NotBlank(message = "Tokens must not be blank") String> tokens;
+}
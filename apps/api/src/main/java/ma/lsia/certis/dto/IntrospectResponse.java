@@ -0,0 +1,17 @@
+package ma.lsia.certis.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IntrospectResponse {
+  // Same order as the tokens of the request
+  private List<TokenIntrospection> results;
+}
@@ -0,0 +1,27 @@
+package ma.lsia.certis.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginActivityResponse {
+  // Inclusive range of UTC days
+  private LocalDate from;
+  private LocalDate to;
+
+  // Distinct users with a successful login, estimated (about 0.8% standard error)
+  private long activeUsers;
+
+  private long successes;
+  private long failures;
+
+  // failures / (successes + failures), 0 without any attempt
+  private double failureRate;
+}
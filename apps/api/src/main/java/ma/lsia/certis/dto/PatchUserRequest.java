@@ -0,0 +1,23 @@
+package ma.lsia.certis.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatchUserRequest {
+  @Size(min = 3, max = 50, message = "First name must be between 3 and 50 characters")
+  private String firstName;
+
+  @Size(min = 3, max = 50, message = "Last name must be between 3 and 50 characters")
+  private String lastName;
+
+  @NotNull(message = "Version is required")
+  private Long version;
+}
@@ -0,0 +1,25 @@
+package ma.lsia.certis.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospection {
+  private boolean active;
+  private Long userId;
+  private String email;
+  private Long issuedAt;
+  private Long expiresAt;
+
+  public static TokenIntrospection inactive() {
+    return new TokenIntrospection(false, null, null, null, null);
+  }
+}
@@ -19,6 +19,8 @@ public class UserResponse {
   private LocalDateTime isVerified;
   private LocalDateTime createdAt;
   private LocalDateTime lastLogin;
+  private Long version;
+  private String avatarHash;
 
   public static UserResponse fromUser(User user) {
     return new UserResponse(
@@ -28,7 +30,9 @@ public class UserResponse {
       user.getEmail(),
       user.getIsVerified(),
       user.getCreatedAt(),
-      user.getLastLogin()
+      user.getLastLogin(),
+      user.getVersion(),
+      user.getAvatarHash()
     );
   }
 }
@@ -0,0 +1,19 @@
+package ma.lsia.certis.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchResponse {
+  private List<UserSearchResult> results;
+  private int page;
+  private int size;
+  private long total;
+}
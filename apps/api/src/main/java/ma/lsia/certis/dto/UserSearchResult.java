@@ -0,0 +1,34 @@
+package ma.lsia.certis.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ma.lsia.certis.entities.User;
+
+/**
+ * What staff see of a user in search results: enough to tell matches apart, nothing more
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchResult {
+  private Long id;
+  private String firstName;
+  private String lastName;
+  private String maskedEmail;
+
+  public static UserSearchResult fromUser(User user) {
+    return new UserSearchResult(user.getId(), user.getFirstName(), user.getLastName(), mask(user.getEmail()));
+  }
+
+  // First character of the local part and the whole domain: j***@example.com
+  static String mask(String email) {
+    int at = email.indexOf('@');
+    if (at <= 0) {
+      return "***";
+    }
+    return email.charAt(0) + "***" + email.substring(at);
+  }
+}
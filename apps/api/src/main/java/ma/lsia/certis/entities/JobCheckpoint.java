@@ -0,0 +1,31 @@
+package ma.lsia.certis.entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Progress of a chunked background job, so that it resumes where it stopped after a restart
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+  @Id
+  private String name;
+
+  // Last primary key the job fully processed
+  private Long lastId;
+
+  private LocalDateTime updatedAt;
+}
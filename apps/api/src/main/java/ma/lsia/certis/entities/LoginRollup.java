@@ -0,0 +1,38 @@
+package ma.lsia.certis.entities;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Login activity of one UTC day, summed over every instance
+ */
+@Entity
+@Table(name = "login_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginRollup {
+  @Id
+  private LocalDate bucketDate;
+
+  // Serialized HyperLogLog of the ids of users who logged in successfully
+  @Column(nullable = false, length = 16384)
+  private byte[] usersSketch;
+
+  private long successes;
+
+  private long failures;
+
+  private LocalDateTime updatedAt;
+}
@@ -0,0 +1,41 @@
+package ma.lsia.certis.entities;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A token that was logged out before its expiry, keyed by its jti claim.
+ * Rows are only needed until the token would have expired anyway.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+  @Index(name = "idx_revoked_tokens_expires_at", columnList = "expiresAt"),
+  @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revokedAt")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+  @Id
+  @Column(length = 64)
+  private String jti;
+
+  private Long userId;
+
+  @Column(nullable = false)
+  private Instant expiresAt;
+
+  @Column(nullable = false)
+  private Instant revokedAt;
+}
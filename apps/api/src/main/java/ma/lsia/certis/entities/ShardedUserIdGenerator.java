@@ -0,0 +1,51 @@
+package ma.lsia.certis.entities;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import ma.lsia.certis.datasource.ShardContext;
+import ma.lsia.certis.datasource.ShardKeys;
+
+/**
+ * Takes the next value of the users_id_seq sequence of the shard being written to and
+ * combines it with that shard's number and the user's bucket. Sequence values that could
+ * rebuild an IDENTITY id from before sharding are skipped.
+ */
+public class ShardedUserIdGenerator extends SequenceStyleGenerator {
+  static final String SEQUENCE = "users_id_seq";
+
+  // Per shard, the last sequence value that could recreate an id from before sharding
+  private static final AtomicLongArray LEGACY_SEQUENCES = new AtomicLongArray(ShardKeys.MAX_SHARDS);
+
+  @Override
+  public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+    parameters.setProperty(SEQUENCE_PARAM, SEQUENCE);
+    // One value per call: a pooled block would be handed out on whichever shard asks next
+    parameters.setProperty(OptimizableGenerator.INCREMENT_PARAM, "1");
+    super.configure(type, parameters, serviceRegistry);
+  }
+
+  @Override
+  public Object generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+    int shard = ShardContext.current();
+    long sequence;
+    do {
+      sequence = ((Number) super.generate(session, object)).longValue();
+    } while (sequence <= LEGACY_SEQUENCES.get(shard));
+    return ShardKeys.userId(sequence, shard, ShardKeys.bucketOf(((User) object).getEmail()));
+  }
+
+  /**
+   * Skip the sequence values of this shard that would produce ids up to the given one
+   */
+  public static void skipIdsUpTo(int shard, long userId) {
+    LEGACY_SEQUENCES.accumulateAndGet(shard, ShardKeys.sequenceOf(userId), Math::max);
+  }
+}
@@ -2,19 +2,21 @@ package ma.lsia.certis.entities;
 
 import java.time.LocalDateTime;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import jakarta.validation.constraints.Email;
+import ma.lsia.certis.datasource.ShardKeys;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -22,14 +24,14 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_shard_bucket", columnList = "shardBucket, id"))
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @ShardedUserId
   private Long id;
 
   @NotBlank
@@ -61,8 +63,23 @@ public class User {
   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
   private LocalDateTime lastLogin;
 
+  // SHA-256 of the avatar image, which is stored on disk under that name
+  @Column(length = 64)
+  private String avatarHash;
+
+  // ShardKeys.bucketOf(email), so the rebalancer can select a bucket through an index
+  private Integer shardBucket;
+
+  // ddl-auto adds the column to existing tables; the default keeps their rows out of the null
+  // version that Spring Data would take for a new entity
+  @Version
+  @ColumnDefault("0")
+  @Column(nullable = false)
+  private long version;
+
   @PrePersist
   protected void onCreate() {
+    this.shardBucket = ShardKeys.bucketOf(email);
     this.createdAt = LocalDateTime.now();
     this.updatedAt = LocalDateTime.now();
   }
@@ -0,0 +1,33 @@
+package ma.lsia.certis.entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Which shard holds the users of a bucket. Kept on shard 0 and shared by every instance.
+ */
+@Entity
+@Table(name = "user_shard_buckets")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserShardBucket {
+  @Id
+  private Integer bucket;
+
+  private int shard;
+
+  // Target shard while the bucket is being moved; its users are read-only until then
+  private Integer movingTo;
+
+  private LocalDateTime updatedAt;
+}
@@ -0,0 +1,7 @@
+package ma.lsia.certis.exception;
+
+public class ConflictException extends RuntimeException {
+  public ConflictException(String message) {
+    super(message);
+  }
+}
@@ -1,19 +1,41 @@
 package ma.lsia.certis.exception;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
+import ma.lsia.certis.config.BinaryEncodingConfig;
+import ma.lsia.certis.filters.RequestIdFilter;
+
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+  private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
+  private final ContentNegotiationManager contentNegotiationManager;
+
+  public GlobalExceptionHandler(
+      @Qualifier("mvcContentNegotiationManager") ContentNegotiationManager contentNegotiationManager) {
+    this.contentNegotiationManager = contentNegotiationManager;
+  }
 
   @ExceptionHandler(MethodArgumentNotValidException.class)
   public ResponseEntity<Map<String, Object>> handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -27,65 +49,139 @@ public class GlobalExceptionHandler {
     });
 
     response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
     response.put("status", HttpStatus.BAD_REQUEST.value());
     response.put("error", "Validation Failed");
     response.put("errors", errors);
 
-    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    return status(HttpStatus.BAD_REQUEST).body(response);
   }
 
   @ExceptionHandler(IllegalArgumentException.class)
   public ResponseEntity<Map<String, Object>> handleIllegalArgumentException(IllegalArgumentException ex) {
     Map<String, Object> response = new HashMap<>();
     response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
     response.put("status", HttpStatus.BAD_REQUEST.value());
     response.put("error", "Bad Request");
     response.put("message", ex.getMessage());
 
-    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    return status(HttpStatus.BAD_REQUEST).body(response);
   }
 
   @ExceptionHandler(BadCredentialsException.class)
   public ResponseEntity<Map<String, Object>> handleBadCredentialsException(BadCredentialsException ex) {
     Map<String, Object> response = new HashMap<>();
     response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
     response.put("status", HttpStatus.UNAUTHORIZED.value());
     response.put("error", "Unauthorized");
     response.put("message", ex.getMessage());
 
-    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+    return status(HttpStatus.UNAUTHORIZED).body(response);
   }
 
   @ExceptionHandler(UnauthorizedException.class)
   public ResponseEntity<Map<String, Object>> handleUnauthorizedException(UnauthorizedException ex) {
     Map<String, Object> response = new HashMap<>();
     response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
     response.put("status", HttpStatus.FORBIDDEN.value());
     response.put("error", "Forbidden");
     response.put("message", ex.getMessage());
 
-    return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+    return status(HttpStatus.FORBIDDEN).body(response);
   }
 
   @ExceptionHandler(ResourceNotFoundException.class)
   public ResponseEntity<Map<String, Object>> handleResourceNotFoundException(ResourceNotFoundException ex) {
     Map<String, Object> response = new HashMap<>();
     response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
     response.put("status", HttpStatus.NOT_FOUND.value());
     response.put("error", "Not Found");
     response.put("message", ex.getMessage());
 
-    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    return status(HttpStatus.NOT_FOUND).body(response);
+  }
+
+  @ExceptionHandler({ConflictException.class, ObjectOptimisticLockingFailureException.class})
+  public ResponseEntity<Map<String, Object>> handleConflictException(RuntimeException ex) {
+    Map<String, Object> response = new HashMap<>();
+    response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
+    response.put("status", HttpStatus.CONFLICT.value());
+    response.put("error", "Conflict");
+    response.put("message", ex instanceof ConflictException
+        ? ex.getMessage()
+        : "User was modified concurrently, reload and retry");
+
+    return status(HttpStatus.CONFLICT).body(response);
+  }
+
+  @ExceptionHandler(PayloadTooLargeException.class)
+  public ResponseEntity<Map<String, Object>> handlePayloadTooLargeException(PayloadTooLargeException ex) {
+    Map<String, Object> response = new HashMap<>();
+    response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
+    response.put("status", HttpStatus.PAYLOAD_TOO_LARGE.value());
+    response.put("error", "Payload Too Large");
+    response.put("message", ex.getMessage());
+
+    return status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+  }
+
+  @ExceptionHandler(UnsupportedMediaTypeException.class)
+  public ResponseEntity<Map<String, Object>> handleUnsupportedMediaTypeException(UnsupportedMediaTypeException ex) {
+    Map<String, Object> response = new HashMap<>();
+    response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
+    response.put("status", HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+    response.put("error", "Unsupported Media Type");
+    response.put("message", ex.getMessage());
+
+    return status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(response);
+  }
+
+  // CannotCreateTransactionException: no pooled connection became free within the timeout
+  @ExceptionHandler({ServiceUnavailableException.class, CannotCreateTransactionException.class})
+  public ResponseEntity<Map<String, Object>> handleServiceUnavailableException(RuntimeException ex) {
+    Map<String, Object> response = new HashMap<>();
+    response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
+    response.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+    response.put("error", "Service Unavailable");
+    response.put("message", ex instanceof ServiceUnavailableException
+        ? ex.getMessage()
+        : "Server is busy, retry later");
+
+    return status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(response);
   }
 
   @ExceptionHandler(Exception.class)
   public ResponseEntity<Map<String, Object>> handleGlobalException(Exception ex) {
+    // The request id is in the MDC, so this line correlates with the response body
+    log.error("Unhandled exception", ex);
+
     Map<String, Object> response = new HashMap<>();
     response.put("timestamp", LocalDateTime.now());
+    response.put("requestId", RequestIdFilter.currentRequestId());
     response.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
     response.put("error", "Internal Server Error");
     response.put("message", "An unexpected error occurred");
 
-    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+    return status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+  }
+
+  // In the encoding the caller negotiated (JSON, CBOR or Smile) whichever resolver writes it
+  private ResponseEntity.BodyBuilder status(HttpStatus status) {
+    MediaType contentType = MediaType.APPLICATION_JSON;
+    if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+      contentType = BinaryEncodingConfig.responseType(contentNegotiationManager,
+          new ServletWebRequest(attributes.getRequest()));
+    }
+    return ResponseEntity.status(status).contentType(contentType);
   }
 }
@@ -0,0 +1,7 @@
+package ma.lsia.certis.exception;
+
+public class PayloadTooLargeException extends RuntimeException {
+  public PayloadTooLargeException(String message) {
+    super(message);
+  }
+}
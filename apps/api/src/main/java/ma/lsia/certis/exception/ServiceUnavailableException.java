@@ -0,0 +1,7 @@
+package ma.lsia.certis.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+  public ServiceUnavailableException(String message) {
+    super(message);
+  }
+}
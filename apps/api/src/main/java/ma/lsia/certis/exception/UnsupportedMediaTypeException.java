@@ -0,0 +1,7 @@
+package ma.lsia.certis.exception;
+
+public class UnsupportedMediaTypeException extends RuntimeException {
+  public UnsupportedMediaTypeException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,103 @@
+package ma.lsia.certis.filters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows observed latency (gradient algorithm).
+ *
+ * Two moving averages of request latency are kept: a short one reflecting current
+ * conditions and a long one standing in for the uncongested baseline. While the short
+ * average stays within {@code tolerance} of the baseline the limit grows by roughly
+ * sqrt(limit) per sample; once requests start queueing (short average rising above the
+ * baseline) the limit shrinks in proportion. Failed requests back the limit off
+ * multiplicatively.
+ */
+public class AdaptiveConcurrencyLimiter {
+  private static final double SHORT_WINDOW = 10;
+  private static final double LONG_WINDOW = 600;
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double tolerance;
+  private final double smoothing;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile double limit;
+  private double shortRtt;
+  private double longRtt;
+
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= max");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.tolerance = tolerance;
+    this.smoothing = smoothing;
+    this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+  }
+
+  /**
+   * Take a slot if one is free. Every successful call must be paired with {@link #release}.
+   */
+  public boolean tryAcquire() {
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= (int) limit) {
+        return false;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  /**
+   * Give a slot back and feed the request's latency into the limit.
+   *
+   * @param dropped the request failed (e.g. a database timeout surfaced as a 5xx)
+   */
+  public void release(long rttNanos, boolean dropped) {
+    int inFlightAtRelease = inFlight.getAndDecrement();
+    onSample(rttNanos, inFlightAtRelease, dropped);
+  }
+
+  private synchronized void onSample(long rttNanos, int inFlightAtRelease, boolean dropped) {
+    double current = limit;
+    if (dropped) {
+      limit = Math.max(minLimit, current * BACKOFF_RATIO);
+      return;
+    }
+
+    double rtt = Math.max(1, rttNanos);
+    if (longRtt == 0) {
+      shortRtt = rtt;
+      longRtt = rtt;
+    } else {
+      shortRtt += (rtt - shortRtt) * (2 / (SHORT_WINDOW + 1));
+      longRtt += (rtt - longRtt) * (2 / (LONG_WINDOW + 1));
+    }
+
+    // Latency dropped well below the baseline: let the baseline catch up quickly
+    if (longRtt / shortRtt > 2) {
+      longRtt *= 0.95;
+    }
+
+    // Too few requests to tell whether the limit is the bottleneck
+    if (inFlightAtRelease < current / 2) {
+      return;
+    }
+
+    double gradient = Math.clamp(tolerance * longRtt / shortRtt, 0.5, 1.0);
+    double target = current * gradient + Math.sqrt(current);
+    limit = Math.clamp(current * (1 - smoothing) + target * smoothing, minLimit, maxLimit);
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+}
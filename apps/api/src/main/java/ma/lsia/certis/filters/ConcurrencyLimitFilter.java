@@ -0,0 +1,136 @@
+package ma.lsia.certis.filters;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Bounds in-flight requests per route group and sheds the excess with 503 + Retry-After,
+ * so a slow database degrades throughput instead of tying up every Tomcat thread.
+ *
+ * /auth/** and /users/** each get their own {@link AdaptiveConcurrencyLimiter}, so a
+ * BCrypt-heavy login burst does not starve profile reads and vice versa. Other paths
+ * (docs, actuator, H2 console) are not limited. Runs right after {@link RequestIdFilter}
+ * and before authentication, so shed requests cost next to nothing.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+  private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+  private final ObjectMapper objectMapper;
+  private final boolean enabled;
+  private final long retryAfterSeconds;
+  private final RouteGroup auth;
+  private final RouteGroup users;
+
+  private record RouteGroup(String name, AdaptiveConcurrencyLimiter limiter, Counter shed) {}
+
+  public ConcurrencyLimitFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+      @Value("${concurrency.limit.enabled:true}") boolean enabled,
+      @Value("${concurrency.limit.initial:20}") int initialLimit,
+      @Value("${concurrency.limit.min:4}") int minLimit,
+      @Value("${concurrency.limit.max:200}") int maxLimit,
+      @Value("${concurrency.limit.tolerance:1.5}") double tolerance,
+      @Value("${concurrency.limit.smoothing:0.2}") double smoothing,
+      @Value("${concurrency.limit.retry-after-seconds:1}") long retryAfterSeconds) {
+    this.objectMapper = objectMapper;
+    this.enabled = enabled;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.auth = group("auth", meterRegistry,
+        new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance, smoothing));
+    this.users = group("users", meterRegistry,
+        new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance, smoothing));
+  }
+
+  private static RouteGroup group(String name, MeterRegistry meterRegistry, AdaptiveConcurrencyLimiter limiter) {
+    Gauge.builder("certis.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+        .tag("group", name)
+        .description("Current adaptive concurrency limit")
+        .register(meterRegistry);
+    Gauge.builder("certis.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+        .tag("group", name)
+        .description("Requests currently holding a concurrency slot")
+        .register(meterRegistry);
+    Counter shed = Counter.builder("certis.concurrency.shed")
+        .tag("group", name)
+        .description("Requests rejected with 503 because the limit was reached")
+        .register(meterRegistry);
+    return new RouteGroup(name, limiter, shed);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !enabled || routeGroup(request) == null;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    RouteGroup group = routeGroup(request);
+    AdaptiveConcurrencyLimiter limiter = group.limiter();
+
+    if (!limiter.tryAcquire()) {
+      group.shed().increment();
+      log.debug("Shedding {} request, limit {} reached", group.name(), limiter.getLimit());
+      reject(response);
+      return;
+    }
+
+    long started = System.nanoTime();
+    boolean dropped = true;
+    try {
+      chain.doFilter(request, response);
+      dropped = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    } finally {
+      limiter.release(System.nanoTime() - started, dropped);
+    }
+  }
+
+  private RouteGroup routeGroup(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    if (path.startsWith("/auth/")) {
+      return auth;
+    }
+    if (path.startsWith("/users/")) {
+      return users;
+    }
+    return null;
+  }
+
+  private void reject(HttpServletResponse response) throws IOException {
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("timestamp", LocalDateTime.now());
+    body.put("requestId", RequestIdFilter.currentRequestId());
+    body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+    body.put("error", "Service Unavailable");
+    body.put("message", "Server is busy, retry later");
+
+    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(), body);
+  }
+}
@@ -0,0 +1,71 @@
+package ma.lsia.certis.filters;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Tags every request with an id that is written to the MDC (and so to every log line of
+ * the request) and echoed in the X-Request-Id response header.
+ * Runs first, ahead of the security chain and JwtFilter.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+  public static final String HEADER = "X-Request-Id";
+  public static final String MDC_KEY = "requestId";
+
+  private static final int MAX_INCOMING_LENGTH = 64;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String requestId = request.getHeader(HEADER);
+    if (!isAcceptable(requestId)) {
+      requestId = newRequestId();
+    }
+
+    MDC.put(MDC_KEY, requestId);
+    response.setHeader(HEADER, requestId);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      MDC.remove(MDC_KEY);
+    }
+  }
+
+  /**
+   * Id of the request being handled on this thread, or null outside a request
+   */
+  public static String currentRequestId() {
+    return MDC.get(MDC_KEY);
+  }
+
+  // Ids from upstream proxies are kept only if they are short and log-safe
+  private static boolean isAcceptable(String requestId) {
+    if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_INCOMING_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < requestId.length(); i++) {
+      char c = requestId.charAt(i);
+      if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String newRequestId() {
+    return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+  }
+}
@@ -0,0 +1,97 @@
+package ma.lsia.certis.jfr;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Continuous flight recording started with the application.
+ *
+ * Uses the JDK "default" settings (designed for always-on use, around 1% overhead) with
+ * the bundled jfr/certis.jfc on top, which enables the Certis events at their thresholds.
+ * The recording is kept as a rolling buffer on disk bounded by max-age and max-size, and
+ * written to jfr.recording.dir when the application stops. At any time
+ * {@code jcmd <pid> JFR.dump name=certis} takes a snapshot.
+ */
+@Component
+@ConditionalOnProperty(name = "jfr.recording.enabled", havingValue = "true")
+public class FlightRecording implements InitializingBean, DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(FlightRecording.class);
+
+  public static final String SETTINGS = "jfr/certis.jfc";
+
+  @Value("${jfr.recording.dir:data/jfr}")
+  private String dir;
+
+  @Value("${jfr.recording.max-age:6h}")
+  private Duration maxAge;
+
+  @Value("${jfr.recording.max-size:256MB}")
+  private DataSize maxSize;
+
+  private Recording recording;
+
+  @Override
+  public void afterPropertiesSet() throws IOException, ParseException {
+    Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+    settings.putAll(bundledSettings().getSettings());
+
+    Path directory = Files.createDirectories(Path.of(dir));
+    Path destination = directory.resolve(
+        "certis-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+
+    recording = new Recording(settings);
+    recording.setName("certis");
+    recording.setToDisk(true);
+    recording.setMaxAge(maxAge);
+    recording.setMaxSize(maxSize.toBytes());
+    recording.setDestination(destination);
+    recording.start();
+    log.info("Flight recording started, written to {} on shutdown", destination.toAbsolutePath());
+  }
+
+  @Override
+  public void destroy() {
+    if (recording == null) {
+      return;
+    }
+    // The JVM's own shutdown hook may have stopped and dumped it already
+    if (recording.getState() == RecordingState.RUNNING) {
+      recording.stop();
+    }
+    recording.close();
+  }
+
+  /**
+   * Settings for the Certis events, as shipped in the jar
+   */
+  public static Configuration bundledSettings() throws IOException, ParseException {
+    try (Reader reader = new InputStreamReader(new ClassPathResource(SETTINGS).getInputStream(),
+        StandardCharsets.UTF_8)) {
+      return Configuration.create(reader);
+    }
+  }
+}
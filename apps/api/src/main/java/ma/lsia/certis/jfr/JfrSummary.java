@@ -0,0 +1,102 @@
+package ma.lsia.certis.jfr;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Latency summary of the Certis events in a recording, grouped by event and by what
+ * distinguishes calls of the same kind (login outcome, token operation, filter decision,
+ * repository method).
+ *
+ * <pre>
+ * java -cp certis.jar -Dloader.main=ma.lsia.certis.jfr.JfrSummary \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher data/jfr/certis-20260101-120000.jfr
+ * </pre>
+ *
+ * Only recorded events are counted, so with the default thresholds the figures describe
+ * the slow tail rather than all calls.
+ */
+public final class JfrSummary {
+  private static final String PREFIX = "ma.lsia.certis.";
+
+  /**
+   * Durations of one group of events, in nanoseconds
+   */
+  public record Row(String event, String key, long count, long p50, long p95, long p99, long max) {}
+
+  private JfrSummary() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: JfrSummary <recording.jfr>");
+      System.exit(2);
+    }
+    print(summarize(Path.of(args[0])), System.out);
+  }
+
+  public static List<Row> summarize(Path recording) throws IOException {
+    Map<String, Map<String, List<Long>>> durations = new TreeMap<>();
+    try (RecordingFile file = new RecordingFile(recording)) {
+      while (file.hasMoreEvents()) {
+        RecordedEvent event = file.readEvent();
+        String name = event.getEventType().getName();
+        if (!name.startsWith(PREFIX)) {
+          continue;
+        }
+        String type = name.substring(PREFIX.length());
+        durations.computeIfAbsent(type, k -> new TreeMap<>())
+            .computeIfAbsent(key(type, event), k -> new ArrayList<>())
+            .add(event.getDuration().toNanos());
+      }
+    }
+
+    List<Row> rows = new ArrayList<>();
+    durations.forEach((type, byKey) -> byKey.forEach((key, values) -> {
+      long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+      Arrays.sort(sorted);
+      rows.add(new Row(type, key, sorted.length, percentile(sorted, 50), percentile(sorted, 95),
+          percentile(sorted, 99), sorted[sorted.length - 1]));
+    }));
+    return rows;
+  }
+
+  public static void print(List<Row> rows, PrintStream out) {
+    out.printf("%-10s %-60s %8s %10s %10s %10s %10s%n", "event", "key", "count", "p50 ms", "p95 ms", "p99 ms",
+        "max ms");
+    for (Row row : rows) {
+      out.printf("%-10s %-60s %8d %10.2f %10.2f %10.2f %10.2f%n", row.event(), row.key(), row.count(),
+          millis(row.p50()), millis(row.p95()), millis(row.p99()), millis(row.max()));
+    }
+  }
+
+  private static String key(String type, RecordedEvent event) {
+    return switch (type) {
+      case "Login" -> String.valueOf(event.getString("outcome"));
+      case "Token" -> event.getString("operation") + (event.getBoolean("valid") ? "" : " (invalid)");
+      case "JwtFilter" -> String.valueOf(event.getString("decision"));
+      case "Repository" -> event.getString("repository") + "." + event.getString("query")
+          + (event.getBoolean("failed") ? " (failed)" : "");
+      default -> "";
+    };
+  }
+
+  // Nearest-rank percentile
+  private static long percentile(long[] sorted, int percentile) {
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
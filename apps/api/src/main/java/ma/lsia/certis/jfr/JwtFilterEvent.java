@@ -0,0 +1,27 @@
+package ma.lsia.certis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("ma.lsia.certis.JwtFilter")
+@Label("JWT Filter")
+@Category({"Certis", "Authentication"})
+@Description("Authentication decision taken by JwtFilter for a request carrying a bearer token")
+@Threshold("5 ms")
+@StackTrace(false)
+public class JwtFilterEvent extends jdk.jfr.Event {
+  public static final String AUTHENTICATED = "authenticated";
+  public static final String INVALID_TOKEN = "invalid-token";
+  public static final String REVOKED = "revoked";
+  public static final String UNKNOWN_USER = "unknown-user";
+
+  @Label("Decision")
+  public String decision;
+
+  @Label("Path")
+  public String path;
+}
@@ -0,0 +1,32 @@
+package ma.lsia.certis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("ma.lsia.certis.Login")
+@Label("Login")
+@Category({"Certis", "Authentication"})
+@Description("AuthService.login, with the share of time spent hashing the password")
+// Above the BCrypt cost (strength 10, ~50-100 ms), so only logins that waited or stalled are kept
+@Threshold("250 ms")
+@StackTrace(false)
+public class LoginEvent extends jdk.jfr.Event {
+  public static final String SUCCESS = "success";
+  public static final String UNKNOWN_EMAIL = "unknown-email";
+  public static final String WRONG_PASSWORD = "wrong-password";
+
+  @Label("Outcome")
+  public String outcome;
+
+  @Label("User Id")
+  public long userId;
+
+  @Label("Hash Duration")
+  @Timespan(Timespan.NANOSECONDS)
+  public long hashDuration;
+}
@@ -0,0 +1,28 @@
+package ma.lsia.certis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("ma.lsia.certis.Repository")
+@Label("Repository Call")
+@Category({"Certis", "Persistence"})
+@Description("Call to a Spring Data repository, with the number of rows returned or affected")
+@Threshold("20 ms")
+@StackTrace(false)
+public class RepositoryEvent extends jdk.jfr.Event {
+  @Label("Repository")
+  public String repository;
+
+  @Label("Query")
+  public String query;
+
+  @Label("Rows")
+  public long rows;
+
+  @Label("Failed")
+  public boolean failed;
+}
@@ -0,0 +1,67 @@
+package ma.lsia.certis.jfr;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+import org.springframework.lang.NonNull;
+
+/**
+ * Emits a {@link RepositoryEvent} around every call on a Spring Data repository proxy.
+ * Costs a disabled-event check when no recording is running.
+ */
+public class RepositoryEventInterceptor implements MethodInterceptor {
+  private final String repository;
+
+  public RepositoryEventInterceptor(String repository) {
+    this.repository = repository;
+  }
+
+  @Override
+  public Object invoke(@NonNull MethodInvocation invocation) throws Throwable {
+    RepositoryEvent event = new RepositoryEvent();
+    if (!event.isEnabled()) {
+      return invocation.proceed();
+    }
+
+    event.begin();
+    Object result = null;
+    boolean failed = true;
+    try {
+      result = invocation.proceed();
+      failed = false;
+      return result;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.repository = repository;
+        event.query = invocation.getMethod().getName();
+        event.rows = rows(result);
+        event.failed = failed;
+        event.commit();
+      }
+    }
+  }
+
+  private static long rows(Object result) {
+    if (result == null) {
+      return 0;
+    }
+    if (result instanceof Collection<?> collection) {
+      return collection.size();
+    }
+    if (result instanceof Slice<?> slice) {
+      return slice.getNumberOfElements();
+    }
+    if (result instanceof Optional<?> optional) {
+      return optional.isPresent() ? 1 : 0;
+    }
+    // Modifying queries return the affected row count
+    if (result instanceof Integer || result instanceof Long) {
+      return ((Number) result).longValue();
+    }
+    return 1;
+  }
+}
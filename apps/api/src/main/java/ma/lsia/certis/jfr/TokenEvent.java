@@ -0,0 +1,25 @@
+package ma.lsia.certis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("ma.lsia.certis.Token")
+@Label("Token")
+@Category({"Certis", "Authentication"})
+@Description("JwtUtil signing or verification of a token")
+@Threshold("1 ms")
+@StackTrace(false)
+public class TokenEvent extends jdk.jfr.Event {
+  public static final String SIGN = "sign";
+  public static final String VERIFY = "verify";
+
+  @Label("Operation")
+  public String operation;
+
+  @Label("Valid")
+  public boolean valid;
+}
@@ -0,0 +1,126 @@
+package ma.lsia.certis.jfr;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread.
+ *
+ * A pinned virtual thread cannot unmount, so while it waits (JDBC I/O, a lock, a sleep)
+ * its carrier is lost to every other virtual thread. Since JDK 24 holding a monitor no
+ * longer pins, but native frames and class initializers still do. The JDK's
+ * jdk.VirtualThreadPinned event is streamed in-process: the first occurrence at each call
+ * site is logged at warn with its stack, later ones at debug, and all of them are timed
+ * in certis.virtual-threads.pinned.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "virtual-threads.pinning.enabled", havingValue = "true", matchIfMissing = true)
+public class VirtualThreadPinningMonitor implements InitializingBean, DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+  private static final String EVENT = "jdk.VirtualThreadPinned";
+  private static final String APPLICATION_PACKAGE = "ma.lsia.certis.";
+  private static final int LOGGED_FRAMES = 12;
+
+  private final MeterRegistry meterRegistry;
+  private final Duration threshold;
+  private final Map<String, LongAdder> sites = new ConcurrentHashMap<>();
+
+  private RecordingStream stream;
+
+  public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+      @Value("${virtual-threads.pinning.threshold:20ms}") Duration threshold) {
+    this.meterRegistry = meterRegistry;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    stream = new RecordingStream();
+    stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+    stream.onEvent(EVENT, this::onPinned);
+    stream.startAsync();
+    log.info("Reporting virtual threads pinned for longer than {}", threshold);
+  }
+
+  @Override
+  public void destroy() {
+    if (stream != null) {
+      stream.close();
+    }
+  }
+
+  /**
+   * Pinning occurrences seen so far, by call site
+   */
+  public Map<String, Long> getSites() {
+    return sites.entrySet().stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum()));
+  }
+
+  private void onPinned(RecordedEvent event) {
+    String reason = event.hasField("pinnedReason") ? event.getString("pinnedReason") : null;
+    List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+    String site = site(frames);
+
+    Timer.builder("certis.virtual-threads.pinned")
+        .description("Time virtual threads spent blocked while pinned to their carrier")
+        .tag("reason", reason != null ? reason : "unknown")
+        .register(meterRegistry)
+        .record(event.getDuration());
+
+    LongAdder count = sites.computeIfAbsent(site, k -> new LongAdder());
+    count.increment();
+    if (count.sum() == 1) {
+      log.warn("Virtual thread pinned for {} ms at {} ({}):{}", event.getDuration().toMillis(), site,
+          reason != null ? reason : "reason unknown", format(frames));
+    } else {
+      log.debug("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), site);
+    }
+  }
+
+  // The innermost application frame, which is where a fix would go, else the top frame
+  private static String site(List<RecordedFrame> frames) {
+    RecordedFrame site = frames.stream()
+        .filter(frame -> frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+        .findFirst()
+        .orElse(frames.isEmpty() ? null : frames.get(0));
+    return site == null ? "unknown" : describe(site);
+  }
+
+  private static String format(List<RecordedFrame> frames) {
+    StringBuilder trace = new StringBuilder();
+    frames.stream().limit(LOGGED_FRAMES).forEach(frame -> trace.append(System.lineSeparator())
+        .append("\tat ").append(describe(frame)));
+    if (frames.size() > LOGGED_FRAMES) {
+      trace.append(System.lineSeparator()).append("\t...");
+    }
+    return trace.toString();
+  }
+
+  private static String describe(RecordedFrame frame) {
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+        + (frame.getLineNumber() > 0 ? ":" + frame.getLineNumber() : "");
+  }
+}
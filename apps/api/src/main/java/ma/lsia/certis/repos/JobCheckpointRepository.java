@@ -0,0 +1,8 @@
+package ma.lsia.certis.repos;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import ma.lsia.certis.entities.JobCheckpoint;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
@@ -0,0 +1,30 @@
+package ma.lsia.certis.repos;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.LockModeType;
+import ma.lsia.certis.entities.LoginRollup;
+
+public interface LoginRollupRepository extends JpaRepository<LoginRollup, LocalDate> {
+  // Instances merge into the same row, one at a time
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select r from LoginRollup r where r.bucketDate = :day")
+  Optional<LoginRollup> findForUpdate(@Param("day") LocalDate day);
+
+  List<LoginRollup> findByBucketDateIn(Collection<LocalDate> days);
+
+  @Transactional
+  @Modifying
+  @Query("delete from LoginRollup r where r.bucketDate < :before")
+  int deleteOlderThan(@Param("before") LocalDate before);
+}
@@ -0,0 +1,22 @@
+package ma.lsia.certis.repos;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import ma.lsia.certis.entities.RevokedToken;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+  List<RevokedToken> findByExpiresAtAfter(Instant now);
+  List<RevokedToken> findByRevokedAtGreaterThanEqualAndExpiresAtAfter(Instant since, Instant now);
+
+  @Transactional
+  @Modifying
+  @Query("delete from RevokedToken t where t.expiresAt <= :now")
+  int deleteExpired(@Param("now") Instant now);
+}
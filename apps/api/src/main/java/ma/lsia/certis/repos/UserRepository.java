@@ -1,13 +1,41 @@
 package ma.lsia.certis.repos;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import ma.lsia.certis.entities.User;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
   Optional<User> findByEmail(String email);
   Optional<User> findByIdAndIsVerifiedIsNotNull(Long id);
   Optional<User> findByEmailAndIsVerifiedIsNotNull(String email);
+
+  // Login bookkeeping is not a profile change, so it leaves the version alone
+  @Modifying
+  @Query("update User u set u.lastLogin = :lastLogin where u.id = :id")
+  int updateLastLogin(@Param("id") Long id, @Param("lastLogin") LocalDateTime lastLogin);
+
+  @Modifying
+  @Query("update User u set u.avatarHash = :avatarHash, u.updatedAt = :updatedAt where u.id = :id")
+  int updateAvatarHash(@Param("id") Long id, @Param("avatarHash") String avatarHash,
+      @Param("updatedAt") LocalDateTime updatedAt);
+
+  // Keyset pagination: walks the table in primary key order without OFFSET scans
+  List<User> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+  @Query("select u.id from User u where u.id > :afterId and u.isVerified is null and u.createdAt < :cutoff order by u.id")
+  List<Long> findUnverifiedIdsCreatedBefore(@Param("afterId") Long afterId, @Param("cutoff") LocalDateTime cutoff,
+      Limit limit);
+
+  // Re-checks the predicate so an account verified since it was selected is kept
+  @Modifying
+  @Query("delete from User u where u.id in :ids and u.isVerified is null and u.createdAt < :cutoff")
+  int deleteUnverifiedByIdIn(@Param("ids") List<Long> ids, @Param("cutoff") LocalDateTime cutoff);
 }
@@ -0,0 +1,12 @@
+package ma.lsia.certis.repos;
+
+import java.time.LocalDateTime;
+
+public interface UserRepositoryCustom {
+  /**
+   * Single-statement optimistic update of the profile columns.
+   * Only non-null values are written; the version is bumped in the same statement.
+   * @return number of rows updated, 0 when the id/version pair no longer matches
+   */
+  int updateProfile(Long id, Long expectedVersion, String firstName, String lastName, LocalDateTime updatedAt);
+}
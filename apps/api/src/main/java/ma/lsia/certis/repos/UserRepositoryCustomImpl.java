@@ -0,0 +1,38 @@
+package ma.lsia.certis.repos;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+
+import ma.lsia.certis.entities.User;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public int updateProfile(Long id, Long expectedVersion, String firstName, String lastName, LocalDateTime updatedAt) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaUpdate<User> update = cb.createCriteriaUpdate(User.class);
+    Root<User> user = update.from(User.class);
+
+    if (firstName != null) {
+      update.set(user.<String>get("firstName"), firstName);
+    }
+    if (lastName != null) {
+      update.set(user.<String>get("lastName"), lastName);
+    }
+    update.set(user.<LocalDateTime>get("updatedAt"), updatedAt);
+    update.set(user.<Long>get("version"), cb.sum(user.<Long>get("version"), 1L));
+    update.where(
+        cb.equal(user.get("id"), id),
+        cb.equal(user.get("version"), expectedVersion));
+
+    return entityManager.createQuery(update).executeUpdate();
+  }
+}
@@ -0,0 +1,7 @@
+package ma.lsia.certis.security;
+
+/**
+ * Lightweight principal placed in the security context by {@link JwtFilter}
+ */
+public record AuthenticatedUser(Long id, String email, Long version) {
+}
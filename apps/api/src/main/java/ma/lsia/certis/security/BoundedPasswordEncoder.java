@@ -0,0 +1,74 @@
+package ma.lsia.certis.security;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import ma.lsia.certis.exception.ServiceUnavailableException;
+
+/**
+ * Caps how many password hashes are computed at once.
+ *
+ * BCrypt is pure CPU work. With a bounded Tomcat pool the thread count limits it, but on
+ * virtual threads every login would start hashing immediately and occupy all the carrier
+ * threads, stalling every other request until the burst is over. Callers beyond the limit
+ * wait for a permit instead, and give up with 503 after the acquire timeout.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+  private final PasswordEncoder delegate;
+  private final Semaphore permits;
+  private final long acquireTimeoutMs;
+
+  public BoundedPasswordEncoder(PasswordEncoder delegate, int maxConcurrency, long acquireTimeoutMs) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be at least 1");
+    }
+    this.delegate = delegate;
+    this.permits = new Semaphore(maxConcurrency, true);
+    this.acquireTimeoutMs = acquireTimeoutMs;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    acquire();
+    try {
+      return delegate.encode(rawPassword);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    acquire();
+    try {
+      return delegate.matches(rawPassword, encodedPassword);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword);
+  }
+
+  /**
+   * Hashes currently waiting for a permit
+   */
+  public int getQueueLength() {
+    return permits.getQueueLength();
+  }
+
+  private void acquire() {
+    try {
+      if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new ServiceUnavailableException("Server is busy, retry later");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException("Interrupted while waiting to hash a password");
+    }
+  }
+}
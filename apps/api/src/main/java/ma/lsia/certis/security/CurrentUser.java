@@ -0,0 +1,19 @@
+package ma.lsia.certis.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the authenticated caller into a controller method.
+ * Declare the parameter as {@link AuthenticatedUser} for the principal alone, or as
+ * {@link ma.lsia.certis.entities.User} for the entity, loaded at most once per request.
+ * Resolution fails with UnauthorizedException when the request is not authenticated.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
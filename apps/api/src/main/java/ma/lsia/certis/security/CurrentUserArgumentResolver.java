@@ -0,0 +1,56 @@
+package ma.lsia.certis.security;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.exception.UnauthorizedException;
+import ma.lsia.certis.services.UserService;
+import ma.lsia.certis.util.SecurityUtil;
+
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+  // Request attribute holding the User entity resolved for this request
+  public static final String USER_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".USER";
+
+  private final UserService userService;
+
+  public CurrentUserArgumentResolver(UserService userService) {
+    this.userService = userService;
+  }
+
+  @Override
+  public boolean supportsParameter(@NonNull MethodParameter parameter) {
+    Class<?> type = parameter.getParameterType();
+    return parameter.hasParameterAnnotation(CurrentUser.class)
+        && (type == AuthenticatedUser.class || type == User.class);
+  }
+
+  @Override
+  public Object resolveArgument(@NonNull MethodParameter parameter, ModelAndViewContainer mavContainer,
+      @NonNull NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+    AuthenticatedUser principal = SecurityUtil.getCurrentUser();
+    if (principal == null) {
+      throw new UnauthorizedException("User not authenticated");
+    }
+    if (parameter.getParameterType() == AuthenticatedUser.class) {
+      return principal;
+    }
+
+    // JwtFilter normally stores the entity it authenticated with; load it only if it did not
+    Object cached = webRequest.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (cached instanceof User user) {
+      return user;
+    }
+    User user = userService.getUserById(principal.id())
+        .orElseThrow(() -> new UnauthorizedException("User not found"));
+    webRequest.setAttribute(USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+    return user;
+  }
+}
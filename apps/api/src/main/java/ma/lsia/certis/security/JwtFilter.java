@@ -5,28 +5,32 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import io.jsonwebtoken.Claims;
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.jfr.JwtFilterEvent;
 import ma.lsia.certis.services.UserService;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
-
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
   private final JwtUtil jwtUtil;
   private final UserService userService;
+  private final TokenRevocationList revocationList;
+  private final RoleAssignments roles;
 
-  public JwtFilter(JwtUtil jwtUtil, UserService userService) {
+  public JwtFilter(JwtUtil jwtUtil, UserService userService, TokenRevocationList revocationList,
+      RoleAssignments roles) {
     this.jwtUtil = jwtUtil;
     this.userService = userService;
+    this.revocationList = revocationList;
+    this.roles = roles;
   }
 
   @Override
@@ -40,29 +44,42 @@ public class JwtFilter extends OncePerRequestFilter {
       return;
     }
 
+    JwtFilterEvent event = new JwtFilterEvent();
+    event.begin();
+    event.decision = JwtFilterEvent.INVALID_TOKEN;
     try {
       final String token = authHeader.substring(7);
-      final String email = jwtUtil.extractEmail(token);
-
-      if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-        ma.lsia.certis.entities.User user = userService.getUserByEmail(email).orElse(null);
+      // Verifies signature and expiration in a single parse
+      final Claims claims = jwtUtil.parseClaims(token);
+      final String email = claims.getSubject();
+      final boolean revoked = email != null && revocationList.isRevoked(claims);
+      if (revoked) {
+        event.decision = JwtFilterEvent.REVOKED;
+      }
 
-        if (user != null && jwtUtil.validateToken(token, email)) {
-          UserDetails userDetails = User.builder()
-              .username(user.getEmail())
-              .password(user.getPassword())
-              .authorities(new ArrayList<>())
-              .build();
+      if (email != null && !revoked && SecurityContextHolder.getContext().getAuthentication() == null) {
+        User user = userService.getUserByEmail(email).orElse(null);
+        event.decision = user != null ? JwtFilterEvent.AUTHENTICATED : JwtFilterEvent.UNKNOWN_USER;
 
+        if (user != null) {
+          AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getEmail(), user.getVersion());
           UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-              userDetails, null, userDetails.getAuthorities());
+              principal, null, roles.authoritiesFor(user.getEmail()));
           authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
           SecurityContextHolder.getContext().setAuthentication(authToken);
+
+          // Handed to @CurrentUser User parameters so controllers do not load it again
+          request.setAttribute(CurrentUserArgumentResolver.USER_ATTRIBUTE, user);
         }
       }
     } catch (Exception e) {
       // Token invalid, continue without authentication
     }
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = request.getRequestURI();
+      event.commit();
+    }
 
     chain.doFilter(request, response);
   }
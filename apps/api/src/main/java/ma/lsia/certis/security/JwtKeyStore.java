@@ -0,0 +1,280 @@
+package ma.lsia.certis.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Asymmetric JWT keys loaded from a local directory, reloaded when its contents change.
+ *
+ * A key pair is stored as {@code <kid>.key} (PKCS#8 PEM) next to {@code <kid>.pub} (X.509
+ * PEM); Ed25519 (EdDSA) and EC P-256 (ES256) keys are supported. A {@code .pub} on its own
+ * is a verification-only key. Tokens are signed with jwt.keys.signing-kid, or by default
+ * with the most recently modified pair, and verified with whichever public key their kid
+ * header names. The public keys are published as a JWK set so other services can verify
+ * tokens without calling the API.
+ *
+ * To rotate: publish the new {@code .pub} on every node first, so that verifiers learn it
+ * before any token uses it, then add its {@code .key}. Keep the old {@code .pub} until the
+ * last token it signed has expired (jwt.expirationMs), then delete it.
+ */
+@Component
+public class JwtKeyStore {
+  private static final Logger log = LoggerFactory.getLogger(JwtKeyStore.class);
+
+  private static final String PRIVATE_SUFFIX = ".key";
+  private static final String PUBLIC_SUFFIX = ".pub";
+  private static final Pattern KID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+  /**
+   * Key and algorithm new tokens are signed with
+   */
+  public record SigningKey(String kid, PrivateKey key, SignatureAlgorithm algorithm) {}
+
+  /**
+   * Public key a token's kid resolves to, with the only algorithm accepted for it
+   */
+  public record VerificationKey(PublicKey key, String algorithm) {}
+
+  private record KeySet(String fingerprint, SigningKey signing, Map<String, VerificationKey> verification,
+      Map<String, Object> jwks) {}
+
+  private final Path dir;
+  private final String signingKid;
+  private final boolean generateIfMissing;
+
+  private volatile KeySet keys;
+
+  public JwtKeyStore(@Value("${jwt.keys.dir:data/jwt-keys}") String dir,
+      @Value("${jwt.keys.signing-kid:}") String signingKid,
+      @Value("${jwt.keys.generate-if-missing:false}") boolean generateIfMissing) {
+    this.dir = Path.of(dir).toAbsolutePath();
+    this.signingKid = signingKid == null || signingKid.isBlank() ? null : signingKid.trim();
+    this.generateIfMissing = generateIfMissing;
+  }
+
+  @PostConstruct
+  void init() throws IOException, GeneralSecurityException {
+    Files.createDirectories(dir);
+    if (generateIfMissing && signingKid == null && listKeyFiles(PRIVATE_SUFFIX).isEmpty()) {
+      String kid = generate();
+      log.warn("No JWT signing key in {}, generated {} (meant for development)", dir, kid);
+    }
+    keys = load(fingerprint());
+    log.info("Loaded JWT keys from {}: signing with {}, {} verification key(s)", dir, keys.signing().kid(),
+        keys.verification().size());
+  }
+
+  /**
+   * Reload the directory if a key file was added, removed or modified. A directory that
+   * no longer loads is reported and the previous keys are kept.
+   */
+  @Scheduled(fixedDelayString = "${jwt.keys.reload-interval-ms:10000}")
+  public void reloadIfChanged() {
+    try {
+      String fingerprint = fingerprint();
+      if (fingerprint.equals(keys.fingerprint())) {
+        return;
+      }
+      KeySet loaded = load(fingerprint);
+      keys = loaded;
+      log.info("Reloaded JWT keys: signing with {}, verification keys {}", loaded.signing().kid(),
+          loaded.verification().keySet());
+    } catch (IOException | GeneralSecurityException | IllegalStateException e) {
+      log.warn("Could not reload JWT keys from {}, keeping the current ones: {}", dir, e.getMessage());
+    }
+  }
+
+  public SigningKey signingKey() {
+    return keys.signing();
+  }
+
+  /**
+   * The public key registered under this kid, or null if there is none
+   */
+  public VerificationKey verificationKey(String kid) {
+    return keys.verification().get(kid);
+  }
+
+  /**
+   * Public keys as a JWK set ({@code {"keys": [...]}})
+   */
+  public Map<String, Object> jwks() {
+    return keys.jwks();
+  }
+
+  private KeySet load(String fingerprint) throws IOException, GeneralSecurityException {
+    Map<String, VerificationKey> verification = new LinkedHashMap<>();
+    List<Object> jwks = new ArrayList<>();
+    for (Path file : listKeyFiles(PUBLIC_SUFFIX)) {
+      String kid = kid(file, PUBLIC_SUFFIX);
+      PublicKey key = (PublicKey) readKey(file, false);
+      String algorithm = algorithm(key).getId();
+      verification.put(kid, new VerificationKey(key, algorithm));
+      jwks.add(Jwks.builder().key(key).id(kid).algorithm(algorithm).publicKeyUse("sig").build());
+    }
+
+    String kid = signingKid;
+    if (kid == null) {
+      // Newest pair wins, so dropping in a new one is enough to rotate
+      kid = listKeyFiles(PRIVATE_SUFFIX).stream()
+          .max(Comparator.comparing(JwtKeyStore::lastModified))
+          .map(file -> kid(file, PRIVATE_SUFFIX))
+          .orElseThrow(() -> new IllegalStateException("No " + PRIVATE_SUFFIX + " signing key in " + dir
+              + " (jwt.keys.generate-if-missing=true creates one for development)"));
+    }
+    Path privateFile = dir.resolve(kid + PRIVATE_SUFFIX);
+    if (!Files.isRegularFile(privateFile)) {
+      throw new IllegalStateException("Signing key " + privateFile + " not found");
+    }
+    if (!verification.containsKey(kid)) {
+      throw new IllegalStateException("Signing key " + kid + " has no " + kid + PUBLIC_SUFFIX);
+    }
+    PrivateKey privateKey = (PrivateKey) readKey(privateFile, true);
+    SigningKey signing = new SigningKey(kid, privateKey, algorithm(privateKey));
+    if (!isPair(privateKey, verification.get(kid).key())) {
+      throw new IllegalStateException(kid + PRIVATE_SUFFIX + " and " + kid + PUBLIC_SUFFIX + " are not a key pair");
+    }
+
+    Map<String, Object> set = Map.of("keys", List.copyOf(jwks));
+    return new KeySet(fingerprint, signing, Map.copyOf(verification), set);
+  }
+
+  private String generate() throws IOException, GeneralSecurityException {
+    KeyPair pair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+    String kid = "ed25519-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+    Path privateFile = dir.resolve(kid + PRIVATE_SUFFIX);
+    try {
+      // Owner-only from the start, not chmod-ed after the key is written
+      Files.createFile(privateFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } catch (UnsupportedOperationException e) {
+      Files.createFile(privateFile); // Not a POSIX file system
+    }
+    Files.writeString(privateFile, pem("PRIVATE KEY", pair.getPrivate().getEncoded()));
+    Files.writeString(dir.resolve(kid + PUBLIC_SUFFIX), pem("PUBLIC KEY", pair.getPublic().getEncoded()));
+    return kid;
+  }
+
+  // Name, size and modification time of every key file: cheap to compute on each poll
+  private String fingerprint() throws IOException {
+    StringBuilder fingerprint = new StringBuilder();
+    for (String suffix : List.of(PUBLIC_SUFFIX, PRIVATE_SUFFIX)) {
+      for (Path file : listKeyFiles(suffix)) {
+        fingerprint.append(file.getFileName()).append(':').append(Files.size(file)).append(':')
+            .append(lastModified(file).toMillis()).append(';');
+      }
+    }
+    return fingerprint.toString();
+  }
+
+  private List<Path> listKeyFiles(String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files
+          .filter(file -> file.getFileName().toString().endsWith(suffix))
+          .filter(file -> KID.matcher(kid(file, suffix)).matches())
+          .filter(Files::isRegularFile)
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static String kid(Path file, String suffix) {
+    String name = file.getFileName().toString();
+    return name.substring(0, name.length() - suffix.length());
+  }
+
+  private static FileTime lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read " + file, e);
+    }
+  }
+
+  private static Key readKey(Path file, boolean isPrivate) throws IOException, GeneralSecurityException {
+    String pem = Files.readString(file, StandardCharsets.US_ASCII);
+    byte[] der = Base64.getMimeDecoder().decode(pem.replaceAll("-----[A-Z ]+-----", ""));
+    GeneralSecurityException failure = null;
+    for (String keyAlgorithm : List.of("EdDSA", "EC")) {
+      try {
+        KeyFactory factory = KeyFactory.getInstance(keyAlgorithm);
+        return isPrivate
+            ? factory.generatePrivate(new PKCS8EncodedKeySpec(der))
+            : factory.generatePublic(new X509EncodedKeySpec(der));
+      } catch (GeneralSecurityException e) {
+        failure = e;
+      }
+    }
+    throw new GeneralSecurityException(file.getFileName() + " is not an Ed25519 or EC key", failure);
+  }
+
+  private static SignatureAlgorithm algorithm(Key key) {
+    if (key instanceof ECKey ec) {
+      int bits = ec.getParams().getCurve().getField().getFieldSize();
+      if (bits != 256) {
+        throw new IllegalStateException("Only P-256 EC keys are supported, got " + bits + " bits");
+      }
+      return Jwts.SIG.ES256;
+    }
+    return Jwts.SIG.EdDSA;
+  }
+
+  // Sign a probe with the private key and check it against the public one
+  private static boolean isPair(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+    if (!privateKey.getAlgorithm().equals(publicKey.getAlgorithm())) {
+      return false;
+    }
+    String algorithm = privateKey instanceof ECKey ? "SHA256withECDSA" : privateKey.getAlgorithm();
+    byte[] probe = "certis-key-pair-check".getBytes(StandardCharsets.US_ASCII);
+    Signature signer = Signature.getInstance(algorithm);
+    signer.initSign(privateKey);
+    signer.update(probe);
+    byte[] signature = signer.sign();
+    Signature verifier = Signature.getInstance(algorithm);
+    verifier.initVerify(publicKey);
+    verifier.update(probe);
+    return verifier.verify(signature);
+  }
+
+  private static String pem(String type, byte[] der) {
+    return "-----BEGIN " + type + "-----\n"
+        + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der)
+        + "\n-----END " + type + "-----\n";
+  }
+}
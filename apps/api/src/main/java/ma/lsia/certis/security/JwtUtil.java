@@ -1,70 +1,96 @@
 package ma.lsia.certis.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import jakarta.annotation.PostConstruct;
+import ma.lsia.certis.jfr.TokenEvent;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
-  @Value("${jwt.secret}")
-  private String secret;
-
   @Value("${jwt.expirationMs}") // Default: 24 hours in milliseconds
   private Long expiration;
 
-  private SecretKey getSigningKey() {
-    return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+  private final JwtKeyStore keyStore;
+  private JwtParser parser;
+
+  public JwtUtil(JwtKeyStore keyStore) {
+    this.keyStore = keyStore;
+  }
+
+  @PostConstruct
+  void init() {
+    // The parser is immutable and thread-safe, build it once; keys are looked up per token
+    // by kid, so a reloaded key directory takes effect without rebuilding it
+    parser = Jwts.parser()
+        .keyLocator(new LocatorAdapter<Key>() {
+          @Override
+          protected Key locate(JwsHeader header) {
+            JwtKeyStore.VerificationKey key = header.getKeyId() != null
+                ? keyStore.verificationKey(header.getKeyId())
+                : null;
+            if (key == null) {
+              throw new UnsupportedJwtException("Unknown signing key id " + header.getKeyId());
+            }
+            // Pin the algorithm to the key, whatever the header claims
+            if (!key.algorithm().equals(header.getAlgorithm())) {
+              throw new UnsupportedJwtException("Key " + header.getKeyId() + " does not sign with "
+                  + header.getAlgorithm());
+            }
+            return key.key();
+          }
+        })
+        .build();
   }
 
   public String generateToken(String email, Long userId) {
-    return Jwts.builder()
+    TokenEvent event = new TokenEvent();
+    event.begin();
+    JwtKeyStore.SigningKey signingKey = keyStore.signingKey();
+    String token = Jwts.builder()
+        .header().keyId(signingKey.kid()).and()
+        .id(UUID.randomUUID().toString()) // jti, the handle used to revoke the token
         .subject(email)
         .claim("userId", userId)
         .issuedAt(new Date())
         .expiration(new Date(System.currentTimeMillis() + expiration))
-        .signWith(getSigningKey())
+        .signWith(signingKey.key(), signingKey.algorithm())
         .compact();
+    event.operation = TokenEvent.SIGN;
+    event.valid = true;
+    event.commit();
+    return token;
   }
 
-  public String extractEmail(String token) {
-    return extractClaim(token, Claims::getSubject);
-  }
-
-  public Long extractUserId(String token) {
-    return extractClaim(token, claims -> claims.get("userId", Long.class));
-  }
-
-  public Date extractExpiration(String token) {
-    return extractClaim(token, Claims::getExpiration);
-  }
-
-  public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-    final Claims claims = extractAllClaims(token);
-    return claimsResolver.apply(claims);
+  /**
+   * Verify the signature and expiration of a token and return its claims
+   */
+  public Claims parseClaims(String token) {
+    return extractAllClaims(token);
   }
 
   private Claims extractAllClaims(String token) {
-    return Jwts.parser()
-        .verifyWith(getSigningKey())
-        .build()
-        .parseSignedClaims(token)
-        .getPayload();
-  }
-
-  private Boolean isTokenExpired(String token) {
-    return extractExpiration(token).before(new Date());
-  }
-
-  public Boolean validateToken(String token, String email) {
-    final String tokenEmail = extractEmail(token);
-    return (tokenEmail.equals(email) && !isTokenExpired(token));
+    TokenEvent event = new TokenEvent();
+    event.begin();
+    event.operation = TokenEvent.VERIFY;
+    try {
+      Claims claims = parser
+          .parseSignedClaims(token)
+          .getPayload();
+      event.valid = true;
+      return claims;
+    } finally {
+      event.commit();
+    }
   }
 }
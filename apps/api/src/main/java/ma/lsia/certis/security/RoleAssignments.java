@@ -0,0 +1,52 @@
+package ma.lsia.certis.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+/**
+ * Roles granted by email address, from security.roles.staff-emails and
+ * security.roles.admin-emails. Admins are staff too. Everyone else has no role.
+ */
+@Component
+public class RoleAssignments {
+  public static final String STAFF = "STAFF";
+  public static final String ADMIN = "ADMIN";
+
+  private final Set<String> staff;
+  private final Set<String> admins;
+
+  public RoleAssignments(@Value("${security.roles.staff-emails:}") String staffEmails,
+      @Value("${security.roles.admin-emails:}") String adminEmails) {
+    this.admins = parse(adminEmails);
+    this.staff = parse(staffEmails);
+  }
+
+  public List<GrantedAuthority> authoritiesFor(String email) {
+    String key = email.trim().toLowerCase(Locale.ROOT);
+    List<GrantedAuthority> authorities = new ArrayList<>(2);
+    if (admins.contains(key)) {
+      authorities.add(new SimpleGrantedAuthority("ROLE_" + ADMIN));
+    }
+    if (admins.contains(key) || staff.contains(key)) {
+      authorities.add(new SimpleGrantedAuthority("ROLE_" + STAFF));
+    }
+    return authorities;
+  }
+
+  // Comma-separated, like cors.allowed-origins
+  private static Set<String> parse(String emails) {
+    return Arrays.stream(emails.split(","))
+        .map(email -> email.trim().toLowerCase(Locale.ROOT))
+        .filter(email -> !email.isEmpty())
+        .collect(Collectors.toUnmodifiableSet());
+  }
+}
@@ -1,8 +1,11 @@
 package ma.lsia.certis.security;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -12,6 +15,9 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
+import ma.lsia.certis.controllers.LoginActivityEndpoint;
+import ma.lsia.certis.controllers.UserShardsEndpoint;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
@@ -24,9 +30,15 @@ public class SecurityConfig {
     this.corsConfigurationSource = corsConfigurationSource;
   }
   
+  /**
+   * BCrypt, with at most max-concurrency hashes in progress (0 means one per CPU)
+   */
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public PasswordEncoder passwordEncoder(
+      @Value("${auth.password-hashing.max-concurrency:0}") int maxConcurrency,
+      @Value("${auth.password-hashing.acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+    int permits = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+    return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), permits, acquireTimeoutMs);
   }
 
   @Bean
@@ -38,9 +50,14 @@ public class SecurityConfig {
         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)) // Use stateless sessions (JWT)
       .authorizeHttpRequests(auth -> auth
         // Public endpoints (no authentication required)
-        .requestMatchers("/auth/register", "/auth/login").permitAll()
+        .requestMatchers("/auth/register", "/auth/login", "/auth/introspect").permitAll()
+        .requestMatchers(HttpMethod.GET, "/.well-known/jwks.json").permitAll() // for offline verifiers
+        .requestMatchers(HttpMethod.GET, "/users/*/avatar").permitAll() // loaded by <img> tags
         .requestMatchers("/h2-console/**").permitAll() // H2 Console (dev only)
         .requestMatchers("/docs/**", "/docs/api/**", "/swagger-ui/**", "/v3/api-docs/**").permitAll() // Swagger
+        .requestMatchers(HttpMethod.GET, "/users/search").hasRole(RoleAssignments.STAFF) // support staff only
+        .requestMatchers(EndpointRequest.to(UserShardsEndpoint.class)).hasRole(RoleAssignments.ADMIN) // moves users
+        .requestMatchers(EndpointRequest.to(LoginActivityEndpoint.class)).hasRole(RoleAssignments.ADMIN) // user activity
         .requestMatchers("/**").permitAll() // dev only
         
         // Protected endpoints (authentication required)
@@ -0,0 +1,250 @@
+package ma.lsia.certis.security;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import ma.lsia.certis.entities.RevokedToken;
+import ma.lsia.certis.repos.RevokedTokenRepository;
+
+/**
+ * In-memory view of revoked tokens, consulted on every authenticated request.
+ *
+ * Revocations are grouped by the hour their token expires in. Each bucket has a Bloom
+ * filter in front of an exact set, so the common case (token not revoked) is answered
+ * from a few bit reads without touching the set, and whole buckets are dropped once
+ * their hour has passed. Buckets live in a ring indexed by hour, so a lookup is a slot
+ * read plus a fixed number of probes and allocates nothing.
+ *
+ * The database stays the source of truth: the list is rebuilt from it at startup and
+ * periodically catches up with revocations recorded by other instances.
+ */
+@Component
+public class TokenRevocationList implements SmartInitializingSingleton {
+  private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+  private static final long HOUR_MS = 3_600_000L;
+  private static final int BITS_PER_ENTRY = 10;
+  private static final int HASH_COUNT = 7;
+  // Re-read a little history on every poll so rows stamped by instances with skewed clocks are not missed
+  private static final long POLL_OVERLAP_MS = 30_000L;
+
+  private final RevokedTokenRepository revokedTokenRepo;
+
+  // Tokens whose expiry hour does not fit the ring (e.g. issued under a longer jwt.expirationMs)
+  private final Map<String, Long> overflow = new ConcurrentHashMap<>();
+
+  private volatile AtomicReferenceArray<Bucket> ring = new AtomicReferenceArray<>(0);
+  private volatile long lastPollStartedAt;
+
+  @Value("${jwt.expirationMs}")
+  private long expirationMs;
+
+  @Value("${auth.revocation.expected-per-hour:10000}")
+  private int expectedPerHour;
+
+  public TokenRevocationList(RevokedTokenRepository revokedTokenRepo) {
+    this.revokedTokenRepo = revokedTokenRepo;
+  }
+
+  /**
+   * Runs once all singletons exist, before the web server starts accepting requests.
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    // Every live token expires within the next expirationMs, so that many hours (plus the
+    // current one and one for rounding) map to distinct slots
+    int hours = (int) Math.min(1 << 16, expirationMs / HOUR_MS + 2);
+    ring = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(2, hours) * 2 - 1));
+
+    long started = System.currentTimeMillis();
+    List<RevokedToken> revoked = revokedTokenRepo.findByExpiresAtAfter(Instant.ofEpochMilli(started));
+    for (RevokedToken token : revoked) {
+      add(token.getJti(), token.getExpiresAt().toEpochMilli(), started);
+    }
+    lastPollStartedAt = started;
+    log.info("Loaded {} revoked tokens", revoked.size());
+  }
+
+  public boolean isRevoked(Claims claims) {
+    Date expiration = claims.getExpiration();
+    return expiration != null && isRevoked(claims.getId(), expiration.getTime());
+  }
+
+  public boolean isRevoked(String jti, long expiresAtMillis) {
+    if (jti == null) {
+      return false;
+    }
+
+    long hour = Math.floorDiv(expiresAtMillis, HOUR_MS);
+    AtomicReferenceArray<Bucket> slots = ring;
+    if (slots.length() > 0) {
+      Bucket bucket = slots.get(slot(slots, hour));
+      if (bucket != null && bucket.hour == hour && bucket.mightContain(jti) && bucket.exact.contains(jti)) {
+        return true;
+      }
+    }
+    return !overflow.isEmpty() && overflow.containsKey(jti);
+  }
+
+  /**
+   * Record a revocation in memory. Callers persist it first.
+   */
+  public void revoke(String jti, long expiresAtMillis) {
+    add(jti, expiresAtMillis, System.currentTimeMillis());
+  }
+
+  private void add(String jti, long expiresAtMillis, long now) {
+    if (jti == null || expiresAtMillis <= now) {
+      return;
+    }
+
+    long hour = Math.floorDiv(expiresAtMillis, HOUR_MS);
+    long currentHour = Math.floorDiv(now, HOUR_MS);
+    AtomicReferenceArray<Bucket> slots = ring;
+    int slot = slot(slots, hour);
+
+    while (true) {
+      Bucket bucket = slots.get(slot);
+      if (bucket != null && bucket.hour == hour) {
+        bucket.add(jti);
+        return;
+      }
+      if (bucket != null && bucket.hour >= currentHour) {
+        // Slot is held by another live hour
+        overflow.put(jti, expiresAtMillis);
+        return;
+      }
+      Bucket fresh = new Bucket(hour, expectedPerHour);
+      if (slots.compareAndSet(slot, bucket, fresh)) {
+        fresh.add(jti);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Drop buckets whose hour has passed: every token in them has expired anyway.
+   */
+  @Scheduled(fixedDelayString = "${auth.revocation.evict-interval-ms:60000}")
+  public void evictExpired() {
+    long now = System.currentTimeMillis();
+    long currentHour = Math.floorDiv(now, HOUR_MS);
+    AtomicReferenceArray<Bucket> slots = ring;
+    for (int i = 0; i < slots.length(); i++) {
+      Bucket bucket = slots.get(i);
+      if (bucket != null && bucket.hour < currentHour) {
+        slots.compareAndSet(i, bucket, null);
+      }
+    }
+    overflow.values().removeIf(expiresAt -> expiresAt <= now);
+  }
+
+  /**
+   * Pick up revocations recorded by other instances since the last poll.
+   */
+  @Scheduled(fixedDelayString = "${auth.revocation.poll-interval-ms:5000}")
+  public void pollRevocations() {
+    long started = System.currentTimeMillis();
+    Instant since = Instant.ofEpochMilli(lastPollStartedAt - POLL_OVERLAP_MS);
+    try {
+      for (RevokedToken token : revokedTokenRepo.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(
+          since, Instant.ofEpochMilli(started))) {
+        add(token.getJti(), token.getExpiresAt().toEpochMilli(), started);
+      }
+      lastPollStartedAt = started;
+    } catch (Exception e) {
+      log.warn("Polling revoked tokens failed: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Rows are only needed until their token expires.
+   */
+  @Scheduled(fixedDelayString = "${auth.revocation.purge-interval-ms:3600000}")
+  public void purgeExpired() {
+    int purged = revokedTokenRepo.deleteExpired(Instant.now());
+    if (purged > 0) {
+      log.info("Purged {} expired revoked tokens", purged);
+    }
+  }
+
+  private static int slot(AtomicReferenceArray<Bucket> slots, long hour) {
+    return (int) (hour & (slots.length() - 1));
+  }
+
+  private static final class Bucket {
+    private final long hour;
+    private final AtomicLongArray bits;
+    private final int mask;
+    private final Set<String> exact = ConcurrentHashMap.newKeySet();
+
+    Bucket(long hour, int expectedEntries) {
+      this.hour = hour;
+      int wanted = (int) Math.min(1 << 30, Math.max(1024L, (long) expectedEntries * BITS_PER_ENTRY));
+      int size = Integer.highestOneBit(wanted * 2 - 1);
+      this.bits = new AtomicLongArray(size >>> 6);
+      this.mask = size - 1;
+    }
+
+    void add(String jti) {
+      // Exact set first: once the filter bits are visible the set already has the entry
+      exact.add(jti);
+      long h1 = hash(jti);
+      long h2 = mix(h1) | 1;
+      for (int i = 0; i < HASH_COUNT; i++) {
+        int bit = (int) ((h1 + i * h2) & mask);
+        long flag = 1L << bit;
+        int word = bit >>> 6;
+        long current;
+        while (((current = bits.get(word)) & flag) == 0 && !bits.compareAndSet(word, current, current | flag)) {
+          // Retry until the bit is set
+        }
+      }
+    }
+
+    boolean mightContain(String jti) {
+      long h1 = hash(jti);
+      long h2 = mix(h1) | 1;
+      for (int i = 0; i < HASH_COUNT; i++) {
+        int bit = (int) ((h1 + i * h2) & mask);
+        if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // FNV-1a over the chars, no intermediate byte[]
+    private static long hash(String s) {
+      long h = 0xcbf29ce484222325L;
+      for (int i = 0; i < s.length(); i++) {
+        h ^= s.charAt(i);
+        h *= 0x100000001b3L;
+      }
+      return mix(h);
+    }
+
+    private static long mix(long h) {
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+    }
+  }
+}
@@ -1,29 +1,64 @@
 package ma.lsia.certis.services;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.jsonwebtoken.Claims;
 
 import ma.lsia.certis.dto.AuthResponse;
 import ma.lsia.certis.dto.LoginRequest;
 import ma.lsia.certis.dto.UserResponse;
+import ma.lsia.certis.entities.RevokedToken;
 import ma.lsia.certis.entities.User;
+import ma.lsia.certis.jfr.LoginEvent;
+import ma.lsia.certis.repos.RevokedTokenRepository;
 import ma.lsia.certis.security.JwtUtil;
+import ma.lsia.certis.security.TokenRevocationList;
 
 @Service
 public class AuthService {
+  private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+
   private final UserService userService;
   private final PasswordEncoder passwordEncoder;
   private final JwtUtil jwtUtil;
+  private final RevokedTokenRepository revokedTokenRepo;
+  private final TokenRevocationList revocationList;
+  private final TokenIntrospectionService introspectionService;
+  private final LoginAnalytics loginAnalytics;
   
-  public AuthService(UserService userService, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+  public AuthService(UserService userService, PasswordEncoder passwordEncoder, JwtUtil jwtUtil,
+      RevokedTokenRepository revokedTokenRepo, TokenRevocationList revocationList,
+      TokenIntrospectionService introspectionService, LoginAnalytics loginAnalytics) {
     this.userService = userService;
     this.passwordEncoder = passwordEncoder;
     this.jwtUtil = jwtUtil;
+    this.revokedTokenRepo = revokedTokenRepo;
+    this.revocationList = revocationList;
+    this.introspectionService = introspectionService;
+    this.loginAnalytics = loginAnalytics;
   }
 
   public AuthResponse login(@NonNull LoginRequest request) {
+    LoginEvent event = new LoginEvent();
+    event.begin();
+    try {
+      return authenticate(request, event);
+    } finally {
+      // Recorded only if slower than the event's threshold
+      event.commit();
+    }
+  }
+
+  private AuthResponse authenticate(LoginRequest request, LoginEvent event) {
     String email = request.getEmail();
     String password = request.getPassword();
     
@@ -31,10 +66,22 @@ public class AuthService {
       throw new BadCredentialsException("Email and password are required");
     }
     
-    User user = userService.getUserByEmail(email)
-        .orElseThrow(() -> new BadCredentialsException("Invalid email or password"));
+    User user = userService.getUserByEmail(email).orElse(null);
+    if (user == null) {
+      event.outcome = LoginEvent.UNKNOWN_EMAIL;
+      loginAnalytics.recordFailure();
+      log.debug("Login rejected: unknown email");
+      throw new BadCredentialsException("Invalid email or password");
+    }
 
-    if (!passwordEncoder.matches(password, user.getPassword())) {
+    long hashStarted = System.nanoTime();
+    boolean matches = passwordEncoder.matches(password, user.getPassword());
+    event.hashDuration = System.nanoTime() - hashStarted;
+    event.userId = user.getId();
+    if (!matches) {
+      event.outcome = LoginEvent.WRONG_PASSWORD;
+      loginAnalytics.recordFailure();
+      log.debug("Login rejected for user {}: wrong password", user.getId());
       throw new BadCredentialsException("Invalid email or password");
     }
 
@@ -44,22 +91,28 @@ public class AuthService {
     }
 
     // Update last login
-    userService.updateLastLogin(userId);
+    LocalDateTime lastLogin = userService.updateLastLogin(userId);
 
     // Generate JWT token
     String token = jwtUtil.generateToken(user.getEmail(), userId);
+    event.outcome = LoginEvent.SUCCESS;
+    loginAnalytics.recordSuccess(userId);
+    log.debug("User {} logged in", userId);
 
     // Return response with token and user info
-    return new AuthResponse(token, UserResponse.fromUser(user));
+    UserResponse userResponse = UserResponse.fromUser(user);
+    userResponse.setLastLogin(lastLogin);
+    return new AuthResponse(token, userResponse);
   }
 
   public AuthResponse refreshToken(@NonNull String oldToken) {
     try {
       // Extract user information from the old token
-      String email = jwtUtil.extractEmail(oldToken);
-      Long userId = jwtUtil.extractUserId(oldToken);
+      Claims claims = jwtUtil.parseClaims(oldToken);
+      String email = claims.getSubject();
+      Long userId = claims.get("userId", Long.class);
       
-      if (email == null || userId == null) {
+      if (email == null || userId == null || revocationList.isRevoked(claims)) {
         throw new BadCredentialsException("Invalid token");
       }
       
@@ -73,7 +126,33 @@ public class AuthService {
       // Return response with new token and user info
       return new AuthResponse(newToken, UserResponse.fromUser(user));
     } catch (Exception e) {
+      log.debug("Token refresh rejected: {}", e.getMessage());
       throw new BadCredentialsException("Invalid or expired token");
     }
   }
+
+  /**
+   * Revoke a token until it expires. Revoking an already revoked token is a no-op.
+   */
+  @Transactional
+  public void logout(@NonNull String token) {
+    Claims claims;
+    try {
+      claims = jwtUtil.parseClaims(token);
+    } catch (Exception e) {
+      throw new BadCredentialsException("Invalid or expired token");
+    }
+
+    String jti = claims.getId();
+    if (jti == null) {
+      // Issued before tokens carried a jti, these can only expire
+      throw new IllegalArgumentException("Token cannot be revoked");
+    }
+
+    Instant expiresAt = claims.getExpiration().toInstant();
+    revokedTokenRepo.save(new RevokedToken(jti, claims.get("userId", Long.class), expiresAt, Instant.now()));
+    revocationList.revoke(jti, expiresAt.toEpochMilli());
+    introspectionService.evict(token);
+    log.debug("Token {} revoked", jti);
+  }
 }
@@ -0,0 +1,168 @@
+package ma.lsia.certis.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ma.lsia.certis.exception.PayloadTooLargeException;
+import ma.lsia.certis.exception.UnsupportedMediaTypeException;
+
+/**
+ * Content-addressed avatar storage on local disk.
+ *
+ * Uploads are streamed through a small buffer into a temporary file while their SHA-256 is
+ * computed, then renamed to {@code <dir>/<first two hex chars>/<hash>}. Identical images are
+ * stored once, and a file never changes once written, which is what lets it be cached forever.
+ */
+@Service
+public class AvatarService {
+  private static final Set<String> ALLOWED_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/webp");
+  private static final int SNIFF_LENGTH = 12;
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Path root;
+  private final long maxBytes;
+
+  public AvatarService(@Value("${avatars.dir:data/avatars}") String dir,
+      @Value("${avatars.max-bytes:2097152}") long maxBytes) {
+    this.root = Path.of(dir).toAbsolutePath();
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Stream an upload to disk and return its content hash.
+   *
+   * @param declaredType the request's Content-Type, which must agree with the image's magic bytes
+   * @param declaredLength the request's Content-Length, or -1 if unknown
+   */
+  public String store(InputStream in, String declaredType, long declaredLength) throws IOException {
+    String type = baseType(declaredType);
+    if (type == null || !ALLOWED_TYPES.contains(type)) {
+      throw new UnsupportedMediaTypeException("Avatar must be a PNG, JPEG, GIF or WebP image");
+    }
+    if (declaredLength > maxBytes) {
+      throw new PayloadTooLargeException("Avatar must not exceed " + maxBytes + " bytes");
+    }
+
+    Path tmpDir = Files.createDirectories(root.resolve("tmp"));
+    Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+    try {
+      MessageDigest sha256 = sha256();
+      byte[] head = new byte[SNIFF_LENGTH];
+      int headLength = 0;
+      long total = 0;
+
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          total += read;
+          if (total > maxBytes) {
+            throw new PayloadTooLargeException("Avatar must not exceed " + maxBytes + " bytes");
+          }
+          if (headLength < SNIFF_LENGTH) {
+            int copied = Math.min(read, SNIFF_LENGTH - headLength);
+            System.arraycopy(buffer, 0, head, headLength, copied);
+            headLength += copied;
+          }
+          sha256.update(buffer, 0, read);
+          out.write(buffer, 0, read);
+        }
+      }
+
+      if (total == 0) {
+        throw new IllegalArgumentException("Avatar body is empty");
+      }
+      if (!type.equals(detectType(head, headLength))) {
+        throw new UnsupportedMediaTypeException("Avatar content does not match " + type);
+      }
+
+      String hash = HexFormat.of().formatHex(sha256.digest());
+      Path target = locate(hash);
+      Files.createDirectories(target.getParent());
+      // Same name means same bytes, so replacing an existing copy is harmless
+      Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      return hash;
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Where the avatar with this hash is (or would be) stored
+   */
+  public Path locate(String hash) {
+    if (hash.length() != 64 || !hash.chars().allMatch(HexFormat::isHexDigit)) {
+      throw new IllegalArgumentException("Invalid avatar hash");
+    }
+    return root.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  /**
+   * Media type of a stored avatar, read from its magic bytes
+   */
+  public String contentType(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      byte[] head = in.readNBytes(SNIFF_LENGTH);
+      String type = detectType(head, head.length);
+      return type != null ? type : "application/octet-stream";
+    }
+  }
+
+  static String detectType(byte[] head, int length) {
+    if (startsWith(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+      return "image/png";
+    }
+    if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+      return "image/jpeg";
+    }
+    if (startsWith(head, length, 'G', 'I', 'F', '8')) {
+      return "image/gif";
+    }
+    if (length >= 12 && startsWith(head, length, 'R', 'I', 'F', 'F')
+        && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+      return "image/webp";
+    }
+    return null;
+  }
+
+  private static boolean startsWith(byte[] head, int length, int... magic) {
+    if (length < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if ((head[i] & 0xFF) != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String baseType(String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    int semicolon = contentType.indexOf(';');
+    String type = semicolon < 0 ? contentType : contentType.substring(0, semicolon);
+    return type.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package ma.lsia.certis.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import ma.lsia.certis.dto.LoginActivityResponse;
+import ma.lsia.certis.entities.LoginRollup;
+import ma.lsia.certis.repos.LoginRollupRepository;
+import ma.lsia.certis.util.HyperLogLog;
+
+/**
+ * Daily, weekly and monthly active users and login outcomes, kept per UTC day.
+ *
+ * A login only touches memory: the user id goes into the day's HyperLogLog and the outcome
+ * into a LongAdder. Every flush-interval-ms the days changed since the last flush are
+ * merged into their login_rollups row (sketch union, counter delta) under a row lock, so
+ * any number of instances add up to the same totals. A range query merges one sketch per
+ * day, which takes the same time for ten users or ten million. Days that can no longer
+ * change are cached decoded.
+ *
+ * Logins before the application is ready (the JIT warm-up's synthetic ones) are ignored.
+ */
+@Service
+public class LoginAnalytics {
+  private static final Logger log = LoggerFactory.getLogger(LoginAnalytics.class);
+
+  private final LoginRollupRepository rollupRepo;
+  private final TransactionTemplate writeTx;
+  private final TransactionTemplate readTx;
+  private final Map<LocalDate, Bucket> live = new ConcurrentHashMap<>();
+  private final Map<LocalDate, Totals> closed = new ConcurrentHashMap<>();
+  private volatile boolean recording;
+
+  @Value("${analytics.logins.enabled:true}")
+  private boolean enabled;
+
+  @Value("${analytics.logins.retention-days:400}")
+  private int retentionDays;
+
+  private record Totals(HyperLogLog users, long successes, long failures) {}
+
+  /**
+   * One day as seen by this instance. {@code flushed*} are the counts already added to the
+   * row; they, and reads combining the row with this bucket, are guarded by the lock.
+   */
+  private static final class Bucket {
+    final HyperLogLog users = new HyperLogLog();
+    final LongAdder successes = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final ReentrantLock lock = new ReentrantLock();
+    long flushedSuccesses;
+    long flushedFailures;
+  }
+
+  public LoginAnalytics(LoginRollupRepository rollupRepo, PlatformTransactionManager transactionManager) {
+    this.rollupRepo = rollupRepo;
+    this.writeTx = new TransactionTemplate(transactionManager);
+    this.readTx = new TransactionTemplate(transactionManager);
+    this.readTx.setReadOnly(true);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    recording = enabled;
+  }
+
+  public void recordSuccess(long userId) {
+    if (recording) {
+      Bucket bucket = bucket(today());
+      bucket.users.offer(userId);
+      bucket.successes.increment();
+    }
+  }
+
+  public void recordFailure() {
+    if (recording) {
+      bucket(today()).failures.increment();
+    }
+  }
+
+  /**
+   * Active users and login outcomes over an inclusive range of UTC days
+   */
+  public LoginActivityResponse activity(LocalDate from, LocalDate to) {
+    if (from.isAfter(to)) {
+      throw new IllegalArgumentException("from must not be after to");
+    }
+    if (from.isBefore(today().minusDays(retentionDays))) {
+      throw new IllegalArgumentException("Login activity is kept for " + retentionDays + " days");
+    }
+
+    LocalDate lastClosed = today().minusDays(2);
+    List<LocalDate> days = from.datesUntil(to.plusDays(1)).toList();
+    // A day is closed once no login can land on it and this instance has flushed it
+    Predicate<LocalDate> isClosed = day -> !day.isAfter(lastClosed) && !live.containsKey(day);
+    List<LocalDate> missing = days.stream()
+        .filter(day -> isClosed.test(day) && !closed.containsKey(day))
+        .toList();
+    if (!missing.isEmpty()) {
+      loadClosed(missing);
+    }
+
+    HyperLogLog users = new HyperLogLog();
+    long successes = 0;
+    long failures = 0;
+    for (LocalDate day : days) {
+      Totals cached = isClosed.test(day) ? closed.get(day) : null;
+      Totals totals = cached != null ? cached : openDay(day);
+      if (totals != null) {
+        users.merge(totals.users());
+        successes += totals.successes();
+        failures += totals.failures();
+      }
+    }
+    long attempts = successes + failures;
+    return new LoginActivityResponse(from, to, users.estimate(), successes, failures,
+        attempts == 0 ? 0 : (double) failures / attempts);
+  }
+
+  /**
+   * Activity over the last 1, 7 and 30 days, today included
+   */
+  public Map<String, LoginActivityResponse> summary() {
+    LocalDate today = today();
+    Map<String, LoginActivityResponse> summary = new HashMap<>();
+    summary.put("daily", activity(today, today));
+    summary.put("weekly", activity(today.minusDays(6), today));
+    summary.put("monthly", activity(today.minusDays(29), today));
+    return summary;
+  }
+
+  @Scheduled(fixedDelayString = "${analytics.logins.flush-interval-ms:60000}")
+  public void flush() {
+    LocalDate today = today();
+    for (Map.Entry<LocalDate, Bucket> entry : live.entrySet()) {
+      LocalDate day = entry.getKey();
+      Bucket bucket = entry.getValue();
+      try {
+        boolean idle = flush(day, bucket);
+        // Nothing left to write and no more logins can land on it
+        if (idle && day.isBefore(today.minusDays(1))) {
+          live.remove(day, bucket);
+        }
+      } catch (DataAccessException e) {
+        // e.g. two instances creating the same day's row at once; retried on the next flush
+        log.warn("Could not flush login activity of {}: {}", day, e.getMessage());
+      }
+    }
+  }
+
+  @Scheduled(cron = "${analytics.logins.purge-cron:0 20 4 * * *}", zone = "UTC")
+  public void purgeExpired() {
+    LocalDate cutoff = today().minusDays(retentionDays);
+    closed.keySet().removeIf(day -> day.isBefore(cutoff));
+    int purged = rollupRepo.deleteOlderThan(cutoff);
+    if (purged > 0) {
+      log.info("Purged {} login activity rollups older than {}", purged, cutoff);
+    }
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    flush();
+  }
+
+  // Returns whether the bucket had nothing new to write
+  private boolean flush(LocalDate day, Bucket bucket) {
+    bucket.lock.lock();
+    try {
+      long successes = bucket.successes.sum();
+      long failures = bucket.failures.sum();
+      long newSuccesses = successes - bucket.flushedSuccesses;
+      long newFailures = failures - bucket.flushedFailures;
+      if (newSuccesses == 0 && newFailures == 0) {
+        return true;
+      }
+
+      writeTx.executeWithoutResult(status -> {
+        LoginRollup rollup = rollupRepo.findForUpdate(day).orElse(null);
+        HyperLogLog users = bucket.users.copy();
+        if (rollup == null) {
+          rollup = new LoginRollup(day, null, 0, 0, null);
+        } else {
+          users.merge(HyperLogLog.fromBytes(rollup.getUsersSketch()));
+        }
+        rollup.setUsersSketch(users.toBytes());
+        rollup.setSuccesses(rollup.getSuccesses() + newSuccesses);
+        rollup.setFailures(rollup.getFailures() + newFailures);
+        rollup.setUpdatedAt(LocalDateTime.now(ZoneOffset.UTC));
+        rollupRepo.save(rollup);
+      });
+      bucket.flushedSuccesses = successes;
+      bucket.flushedFailures = failures;
+      return false;
+    } finally {
+      bucket.lock.unlock();
+    }
+  }
+
+  // The stored row, which other instances may still add to, plus what is not flushed yet
+  private Totals openDay(LocalDate day) {
+    Bucket bucket = live.get(day);
+    if (bucket == null) {
+      return stored(day);
+    }
+    bucket.lock.lock();
+    try {
+      Totals stored = stored(day);
+      HyperLogLog users = bucket.users.copy();
+      long successes = bucket.successes.sum() - bucket.flushedSuccesses;
+      long failures = bucket.failures.sum() - bucket.flushedFailures;
+      if (stored != null) {
+        users.merge(stored.users());
+        successes += stored.successes();
+        failures += stored.failures();
+      }
+      return new Totals(users, successes, failures);
+    } finally {
+      bucket.lock.unlock();
+    }
+  }
+
+  private Totals stored(LocalDate day) {
+    return readTx.execute(status -> rollupRepo.findById(day).map(LoginAnalytics::totals).orElse(null));
+  }
+
+  private void loadClosed(List<LocalDate> days) {
+    List<LoginRollup> rollups = readTx.execute(status -> rollupRepo.findByBucketDateIn(days));
+    List<LocalDate> empty = new ArrayList<>(days);
+    for (LoginRollup rollup : rollups) {
+      closed.put(rollup.getBucketDate(), totals(rollup));
+      empty.remove(rollup.getBucketDate());
+    }
+    // Days without a row had no logins, remember that too
+    for (LocalDate day : empty) {
+      closed.put(day, new Totals(new HyperLogLog(), 0, 0));
+    }
+  }
+
+  private static Totals totals(LoginRollup rollup) {
+    return new Totals(HyperLogLog.fromBytes(rollup.getUsersSketch()), rollup.getSuccesses(), rollup.getFailures());
+  }
+
+  private Bucket bucket(LocalDate day) {
+    Bucket bucket = live.get(day);
+    return bucket != null ? bucket : live.computeIfAbsent(day, k -> new Bucket());
+  }
+
+  private LocalDate today() {
+    return LocalDate.now(ZoneOffset.UTC);
+  }
+}
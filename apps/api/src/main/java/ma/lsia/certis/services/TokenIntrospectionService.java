@@ -0,0 +1,144 @@
+package ma.lsia.certis.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import io.jsonwebtoken.Claims;
+import ma.lsia.certis.dto.IntrospectResponse;
+import ma.lsia.certis.dto.TokenIntrospection;
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.security.JwtUtil;
+import ma.lsia.certis.security.TokenRevocationList;
+
+/**
+ * Batch token verification for downstream services.
+ *
+ * Tokens are verified in parallel, the users they reference are resolved with a single
+ * query, and every result is cached for a short time (never past the token's expiry).
+ */
+@Service
+public class TokenIntrospectionService {
+  private final JwtUtil jwtUtil;
+  private final UserService userService;
+  private final TokenRevocationList revocationList;
+  private final Map<String, CachedIntrospection> cache = new ConcurrentHashMap<>();
+
+  @Value("${auth.introspection.cache-ttl-ms:5000}")
+  private long cacheTtlMs;
+
+  @Value("${auth.introspection.cache-max-entries:100000}")
+  private int cacheMaxEntries;
+
+  public TokenIntrospectionService(JwtUtil jwtUtil, UserService userService, TokenRevocationList revocationList) {
+    this.jwtUtil = jwtUtil;
+    this.userService = userService;
+    this.revocationList = revocationList;
+  }
+
+  private record CachedIntrospection(TokenIntrospection result, long expiresAtMillis) {}
+
+  public IntrospectResponse introspect(@NonNull List<String> tokens) {
+    long now = System.currentTimeMillis();
+    TokenIntrospection[] results = new TokenIntrospection[tokens.size()];
+
+    List<Integer> misses = new ArrayList<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      CachedIntrospection cached = cache.get(tokens.get(i));
+      if (cached != null && cached.expiresAtMillis() > now) {
+        results[i] = cached.result();
+      } else {
+        misses.add(i);
+      }
+    }
+
+    if (!misses.isEmpty()) {
+      // Signature checks are CPU-bound and independent of each other
+      Claims[] claims = new Claims[tokens.size()];
+      IntStream.range(0, misses.size()).parallel().forEach(m -> {
+        int i = misses.get(m);
+        claims[i] = verify(tokens.get(i));
+      });
+
+      Set<Long> userIds = new HashSet<>();
+      for (int i : misses) {
+        Long userId = claims[i] == null ? null : claims[i].get("userId", Long.class);
+        if (userId != null) {
+          userIds.add(userId);
+        }
+      }
+      Map<Long, User> usersById = userIds.isEmpty()
+          ? Map.of()
+          : userService.getUsersByIds(userIds).stream()
+              .collect(Collectors.toMap(User::getId, Function.identity()));
+
+      for (int i : misses) {
+        results[i] = resolve(claims[i], usersById);
+        cache(tokens.get(i), results[i], now);
+      }
+    }
+
+    return new IntrospectResponse(List.of(results));
+  }
+
+  /**
+   * Forget a cached result, e.g. after the token was revoked on this instance
+   */
+  public void evict(String token) {
+    cache.remove(token);
+  }
+
+  private Claims verify(String token) {
+    try {
+      Claims claims = jwtUtil.parseClaims(token);
+      return revocationList.isRevoked(claims) ? null : claims;
+    } catch (Exception e) {
+      // Malformed, badly signed, expired or revoked
+      return null;
+    }
+  }
+
+  private static TokenIntrospection resolve(Claims claims, Map<Long, User> usersById) {
+    if (claims == null) {
+      return TokenIntrospection.inactive();
+    }
+    Long userId = claims.get("userId", Long.class);
+    User user = userId == null ? null : usersById.get(userId);
+    if (user == null || !user.getEmail().equals(claims.getSubject())) {
+      return TokenIntrospection.inactive();
+    }
+
+    return new TokenIntrospection(
+      true,
+      userId,
+      claims.getSubject(),
+      claims.getIssuedAt() == null ? null : claims.getIssuedAt().getTime() / 1000,
+      claims.getExpiration() == null ? null : claims.getExpiration().getTime() / 1000
+    );
+  }
+
+  private void cache(String token, TokenIntrospection result, long now) {
+    long expiresAt = now + cacheTtlMs;
+    if (result.getExpiresAt() != null) {
+      expiresAt = Math.min(expiresAt, result.getExpiresAt() * 1000);
+    }
+
+    if (cache.size() >= cacheMaxEntries) {
+      cache.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+      if (cache.size() >= cacheMaxEntries) {
+        cache.clear();
+      }
+    }
+    cache.put(token, new CachedIntrospection(result, expiresAt));
+  }
+}
@@ -0,0 +1,221 @@
+package ma.lsia.certis.services;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ma.lsia.certis.datasource.ShardContext;
+import ma.lsia.certis.entities.JobCheckpoint;
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.repos.JobCheckpointRepository;
+import ma.lsia.certis.repos.UserRepository;
+
+/**
+ * Deletes accounts that were never verified within {@code purge.unverified.max-age-days}.
+ *
+ * The table is walked in primary key order in chunks of {@code chunk-size}; each chunk is
+ * selected, deleted and checkpointed in its own short transaction, with a pause between
+ * chunks so the job never holds locks for long or crowds out login traffic. The checkpoint
+ * survives restarts and is reset once a run reaches the end of the table. Shards are purged
+ * one after the other, each with its own checkpoint. Accounts whose bucket is being moved,
+ * or was moved away and not yet deleted from this shard, are skipped until a later run, as
+ * deleting them would race the copy. In dry-run mode candidates are only counted and logged.
+ *
+ * The scheduled run is off by default: there is no verification flow yet, so every account
+ * would eventually qualify.
+ */
+@Component
+public class UnverifiedUserPurgeJob {
+  private static final Logger log = LoggerFactory.getLogger(UnverifiedUserPurgeJob.class);
+
+  static final String JOB_NAME = "purge-unverified-users";
+
+  private final UserRepository userRepo;
+  private final JobCheckpointRepository checkpointRepo;
+  private final UserSearchIndex searchIndex;
+  private final UserShards shards;
+  private final TransactionTemplate writeTx;
+  private final TransactionTemplate readTx;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  private final Counter purgedTotal;
+  private final DistributionSummary purgedPerRun;
+  private final Timer runDuration;
+
+  @Value("${purge.unverified.enabled:false}")
+  private boolean enabled;
+
+  @Value("${purge.unverified.dry-run:false}")
+  private boolean dryRun;
+
+  @Value("${purge.unverified.max-age-days:7}")
+  private long maxAgeDays;
+
+  @Value("${purge.unverified.chunk-size:500}")
+  private int chunkSize;
+
+  @Value("${purge.unverified.pause-ms:200}")
+  private long pauseMs;
+
+  public UnverifiedUserPurgeJob(UserRepository userRepo, JobCheckpointRepository checkpointRepo,
+      UserSearchIndex searchIndex, UserShards shards, PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
+    this.userRepo = userRepo;
+    this.checkpointRepo = checkpointRepo;
+    this.searchIndex = searchIndex;
+    this.shards = shards;
+    this.writeTx = new TransactionTemplate(transactionManager);
+    this.readTx = new TransactionTemplate(transactionManager);
+    this.readTx.setReadOnly(true);
+
+    this.purgedTotal = Counter.builder("certis.purge.unverified.purged")
+        .description("Unverified accounts deleted")
+        .register(meterRegistry);
+    this.purgedPerRun = DistributionSummary.builder("certis.purge.unverified.run.purged")
+        .description("Unverified accounts deleted (or found, in dry-run mode) per run")
+        .register(meterRegistry);
+    this.runDuration = Timer.builder("certis.purge.unverified.run.duration")
+        .description("Wall time of a purge run, pauses included")
+        .register(meterRegistry);
+  }
+
+  @Scheduled(cron = "${purge.unverified.cron:0 30 3 * * *}")
+  public void scheduledRun() {
+    if (enabled) {
+      run();
+    }
+  }
+
+  /**
+   * Purge (or count, in dry-run mode) stale unverified accounts.
+   *
+   * @return number of accounts deleted, or that would have been
+   */
+  public int run() {
+    if (!running.compareAndSet(false, true)) {
+      log.info("Unverified user purge already running, skipping");
+      return 0;
+    }
+
+    long started = System.nanoTime();
+    LocalDateTime cutoff = LocalDateTime.now().minusDays(maxAgeDays);
+    int total = 0;
+    try {
+      for (int shard = 0; shard < shards.getShardCount() && !Thread.currentThread().isInterrupted(); shard++) {
+        // The checkpoint is kept on the shard it belongs to, and saved with each chunk
+        total += ShardContext.call(shard, () -> purgeShard(cutoff));
+      }
+      log.info("Unverified user purge {} {} accounts in {} ms", dryRun ? "found" : "deleted", total,
+          (System.nanoTime() - started) / 1_000_000);
+    } finally {
+      purgedPerRun.record(total);
+      runDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      running.set(false);
+    }
+    return total;
+  }
+
+  private int purgeShard(LocalDateTime cutoff) {
+    int shard = ShardContext.current();
+    long cursor = dryRun ? 0L : loadCheckpoint();
+    int total = 0;
+    try {
+      log.info("Unverified user purge started on shard {} (cutoff {}, from id {}{})", shard, cutoff, cursor,
+          dryRun ? ", dry run" : "");
+      while (true) {
+        Chunk chunk = dryRun ? countChunk(cursor, cutoff) : purgeChunk(cursor, cutoff);
+        total += chunk.affected();
+        if (!dryRun) {
+          purgedTotal.increment(chunk.affected());
+        }
+        if (chunk.lastId() == null) {
+          break;
+        }
+        cursor = chunk.lastId();
+        if (chunk.scanned() < chunkSize) {
+          break;
+        }
+        pause();
+      }
+
+      if (!dryRun) {
+        // Reached the end of the table, the next run starts over
+        saveCheckpoint(0L);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Unverified user purge interrupted on shard {} at id {}", shard, cursor);
+    } catch (RuntimeException e) {
+      log.warn("Unverified user purge stopped on shard {} at id {}: {}", shard, cursor, e.getMessage());
+    }
+    return total;
+  }
+
+  // lastId is null once there is nothing left past the cursor
+  private record Chunk(Long lastId, int scanned, int affected) {}
+
+  private Chunk purgeChunk(long afterId, LocalDateTime cutoff) {
+    int shard = ShardContext.current();
+    return writeTx.execute(status -> {
+      List<Long> ids = userRepo.findUnverifiedIdsCreatedBefore(afterId, cutoff, Limit.of(chunkSize));
+      if (ids.isEmpty()) {
+        return new Chunk(null, 0, 0);
+      }
+
+      // Checked in the chunk's transaction, like writeById: a move waits for those to finish
+      List<Long> purgeable = ids.stream().filter(id -> shards.isWritableOn(shard, id)).toList();
+      int deleted = purgeable.isEmpty() ? 0 : userRepo.deleteUnverifiedByIdIn(purgeable, cutoff);
+      Set<Long> kept = deleted == purgeable.size()
+          ? Set.of()
+          : new HashSet<>(userRepo.findAllById(purgeable).stream().map(User::getId).toList());
+      for (Long id : purgeable) {
+        if (!kept.contains(id)) {
+          searchIndex.remove(id);
+        }
+      }
+
+      Long lastId = ids.get(ids.size() - 1);
+      saveCheckpoint(lastId);
+      return new Chunk(lastId, ids.size(), deleted);
+    });
+  }
+
+  private Chunk countChunk(long afterId, LocalDateTime cutoff) {
+    return readTx.execute(status -> {
+      List<Long> ids = userRepo.findUnverifiedIdsCreatedBefore(afterId, cutoff, Limit.of(chunkSize));
+      return ids.isEmpty() ? new Chunk(null, 0, 0) : new Chunk(ids.get(ids.size() - 1), ids.size(), ids.size());
+    });
+  }
+
+  private long loadCheckpoint() {
+    return checkpointRepo.findById(JOB_NAME)
+        .map(JobCheckpoint::getLastId)
+        .orElse(0L);
+  }
+
+  private void saveCheckpoint(long lastId) {
+    checkpointRepo.save(new JobCheckpoint(JOB_NAME, lastId, LocalDateTime.now()));
+  }
+
+  private void pause() throws InterruptedException {
+    if (pauseMs > 0) {
+      Thread.sleep(pauseMs);
+    }
+  }
+}
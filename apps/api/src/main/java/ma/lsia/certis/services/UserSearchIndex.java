@@ -0,0 +1,499 @@
+package ma.lsia.certis.services;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.repos.UserRepository;
+
+/**
+ * In-memory n-gram index over user first name, last name and email.
+ *
+ * Every token of an indexed field is padded with two start markers and split into
+ * trigrams, so "ada" yields "^^a", "^ad" and "ada". Queries of three characters or
+ * more match anywhere inside a token, shorter queries match token prefixes.
+ * Posting lists are sorted int arrays of internal document ids; updates append a
+ * new document and tombstone the old one, and the postings are compacted once
+ * tombstones outnumber live documents.
+ */
+@Component
+public class UserSearchIndex {
+  private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+  private static final char TOKEN_START = '\u0001';
+  private static final int MIN_COMPACTION_TOMBSTONES = 1 << 16;
+
+  private final UserRepository userRepo;
+  private final UserShards shards;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  @Value("${search.users.build-batch-size:1000}")
+  private int buildBatchSize;
+
+  @Value("${search.users.max-window:1000}")
+  private int maxWindow;
+
+  // Guarded by lock
+  private long[] docUserIds = new long[1024];
+  private String[] docFirstNames = new String[1024];
+  private String[] docLastNames = new String[1024];
+  private String[] docEmails = new String[1024];
+  private final BitSet liveDocs = new BitSet();
+  private final Map<Long, Integer> docByUserId = new HashMap<>();
+  private final Map<Long, Postings> postings = new HashMap<>();
+  private int docCount;
+  private int tombstones;
+  private boolean building;
+  private final Set<Long> removedWhileBuilding = new HashSet<>();
+
+  public UserSearchIndex(UserRepository userRepo, UserShards shards) {
+    this.userRepo = userRepo;
+    this.shards = shards;
+  }
+
+  /**
+   * Page of ranked matches: the total match count and the user ids of the requested page
+   */
+  public record Hits(long total, long[] userIds) {}
+
+  /**
+   * Stream the users table in keyset-ordered batches and load it into the index, every
+   * shard in parallel
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    long started = System.nanoTime();
+    withWriteLock(() -> {
+      building = true;
+      removedWhileBuilding.clear();
+    });
+
+    int loaded = 0;
+    try {
+      loaded = shards.onEveryShard(shard -> List.of(loadShard())).stream().mapToInt(Integer::intValue).sum();
+    } finally {
+      withWriteLock(() -> {
+        building = false;
+        removedWhileBuilding.clear();
+      });
+    }
+
+    log.info("User search index built: {} users in {} ms", loaded, (System.nanoTime() - started) / 1_000_000);
+  }
+
+  private int loadShard() {
+    long lastId = 0L;
+    int loaded = 0;
+    List<User> batch;
+    do {
+      batch = userRepo.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(buildBatchSize));
+      final List<User> users = batch;
+      withWriteLock(() -> {
+        for (User user : users) {
+          if (!docByUserId.containsKey(user.getId()) && !removedWhileBuilding.contains(user.getId())) {
+            addDocument(user);
+          }
+        }
+      });
+      loaded += batch.size();
+      if (!batch.isEmpty()) {
+        lastId = batch.get(batch.size() - 1).getId();
+      }
+    } while (batch.size() == buildBatchSize);
+    return loaded;
+  }
+
+  /**
+   * Add or replace a user once the surrounding transaction (if any) commits
+   */
+  public void index(@NonNull User user) {
+    final long userId = user.getId();
+    final String firstName = user.getFirstName();
+    final String lastName = user.getLastName();
+    final String email = user.getEmail();
+    afterCommit(() -> withWriteLock(() -> {
+      removeDocument(userId);
+      addDocument(userId, firstName, lastName, email);
+    }));
+  }
+
+  /**
+   * Remove a user once the surrounding transaction (if any) commits
+   */
+  public void remove(@NonNull Long userId) {
+    afterCommit(() -> withWriteLock(() -> {
+      removeDocument(userId);
+      if (building) {
+        removedWhileBuilding.add(userId);
+      }
+    }));
+  }
+
+  /**
+   * Find users matching every token of the query, best matches first
+   */
+  public Hits search(@NonNull String query, int page, int size) {
+    String[] tokens = tokenize(query);
+    if (tokens.length == 0) {
+      return new Hits(0, new long[0]);
+    }
+
+    int window = (int) Math.min((long) page * size + size, maxWindow);
+    lock.readLock().lock();
+    try {
+      int[] candidates = candidates(tokens);
+      if (candidates == null) {
+        return new Hits(0, new long[0]);
+      }
+
+      // Min-heap of the best `window` hits, encoded as (score << 32 | MAX_VALUE - docId)
+      long[] heap = new long[Math.max(window, 1)];
+      int heapSize = 0;
+      long total = 0;
+
+      for (int doc : candidates) {
+        if (!liveDocs.get(doc)) {
+          continue;
+        }
+        int score = score(doc, tokens);
+        if (score == 0) {
+          continue;
+        }
+        total++;
+        long entry = ((long) score << 32) | (Integer.MAX_VALUE - doc);
+        if (heapSize < window) {
+          heap[heapSize] = entry;
+          siftUp(heap, heapSize++);
+        } else if (window > 0 && entry > heap[0]) {
+          heap[0] = entry;
+          siftDown(heap, heapSize);
+        }
+      }
+
+      long[] ranked = Arrays.copyOf(heap, heapSize);
+      Arrays.sort(ranked);
+      long from = (long) page * size;
+      if (from >= ranked.length) {
+        return new Hits(total, new long[0]);
+      }
+      int start = (int) from;
+      int end = Math.min(start + size, ranked.length);
+      long[] userIds = new long[end - start];
+      for (int i = start; i < end; i++) {
+        int doc = Integer.MAX_VALUE - (int) ranked[ranked.length - 1 - i];
+        userIds[i - start] = docUserIds[doc];
+      }
+      return new Hits(total, userIds);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return docByUserId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Intersect the posting lists of every gram the query requires.
+   * Returns null when some gram has no postings at all.
+   */
+  private int[] candidates(String[] tokens) {
+    Set<Long> grams = new HashSet<>();
+    for (String token : tokens) {
+      if (token.length() >= 3) {
+        for (int i = 0; i + 3 <= token.length(); i++) {
+          grams.add(gram(token.charAt(i), token.charAt(i + 1), token.charAt(i + 2)));
+        }
+      } else if (token.length() == 2) {
+        grams.add(gram(TOKEN_START, token.charAt(0), token.charAt(1)));
+      } else {
+        grams.add(gram(TOKEN_START, TOKEN_START, token.charAt(0)));
+      }
+    }
+
+    Postings[] lists = new Postings[grams.size()];
+    int n = 0;
+    for (Long gram : grams) {
+      Postings list = postings.get(gram);
+      if (list == null || list.size == 0) {
+        return null;
+      }
+      lists[n++] = list;
+    }
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+    int[] result = Arrays.copyOf(lists[0].docs, lists[0].size);
+    int resultSize = result.length;
+    for (int i = 1; i < lists.length && resultSize > 0; i++) {
+      resultSize = intersect(result, resultSize, lists[i]);
+    }
+    return resultSize == result.length ? result : Arrays.copyOf(result, resultSize);
+  }
+
+  /**
+   * Intersect in place; both inputs are sorted ascending
+   */
+  private static int intersect(int[] target, int targetSize, Postings other) {
+    int[] docs = other.docs;
+    int i = 0, j = 0, out = 0;
+    while (i < targetSize && j < other.size) {
+      int a = target[i], b = docs[j];
+      if (a == b) {
+        target[out++] = a;
+        i++;
+        j++;
+      } else if (a < b) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Rank a candidate: every query token must match one of the fields.
+   * Whole-field match scores 4, field prefix 3, token prefix 2, substring 1.
+   */
+  private int score(int doc, String[] tokens) {
+    int total = 0;
+    for (String token : tokens) {
+      int best = Math.max(matchScore(docFirstNames[doc], token),
+          Math.max(matchScore(docLastNames[doc], token), matchScore(docEmails[doc], token)));
+      if (best == 0) {
+        return 0;
+      }
+      total += best;
+    }
+    return total;
+  }
+
+  private static int matchScore(String field, String token) {
+    if (field == null) {
+      return 0;
+    }
+    if (field.equals(token)) {
+      return 4;
+    }
+    if (field.startsWith(token)) {
+      return 3;
+    }
+    int at = field.indexOf(token);
+    if (at < 0) {
+      return 0;
+    }
+    while (at >= 0) {
+      if (!Character.isLetterOrDigit(field.charAt(at - 1))) {
+        return 2;
+      }
+      at = field.indexOf(token, at + 1);
+    }
+    return 1;
+  }
+
+  private void addDocument(User user) {
+    addDocument(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail());
+  }
+
+  private void addDocument(long userId, String firstName, String lastName, String email) {
+    int doc = docCount++;
+    if (doc == docUserIds.length) {
+      int capacity = docUserIds.length << 1;
+      docUserIds = Arrays.copyOf(docUserIds, capacity);
+      docFirstNames = Arrays.copyOf(docFirstNames, capacity);
+      docLastNames = Arrays.copyOf(docLastNames, capacity);
+      docEmails = Arrays.copyOf(docEmails, capacity);
+    }
+    docUserIds[doc] = userId;
+    docFirstNames[doc] = normalize(firstName);
+    docLastNames[doc] = normalize(lastName);
+    docEmails[doc] = normalize(email);
+    liveDocs.set(doc);
+    docByUserId.put(userId, doc);
+    postDocument(doc);
+  }
+
+  private void postDocument(int doc) {
+    postField(doc, docFirstNames[doc]);
+    postField(doc, docLastNames[doc]);
+    postField(doc, docEmails[doc]);
+  }
+
+  private void postField(int doc, String field) {
+    if (field == null) {
+      return;
+    }
+    char prev2 = TOKEN_START, prev1 = TOKEN_START;
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (!Character.isLetterOrDigit(c)) {
+        prev2 = TOKEN_START;
+        prev1 = TOKEN_START;
+        continue;
+      }
+      postings.computeIfAbsent(gram(prev2, prev1, c), k -> new Postings()).add(doc);
+      prev2 = prev1;
+      prev1 = c;
+    }
+  }
+
+  private void removeDocument(long userId) {
+    Integer doc = docByUserId.remove(userId);
+    if (doc == null) {
+      return;
+    }
+    liveDocs.clear(doc);
+    docFirstNames[doc] = null;
+    docLastNames[doc] = null;
+    docEmails[doc] = null;
+    tombstones++;
+    if (tombstones > MIN_COMPACTION_TOMBSTONES && tombstones > docByUserId.size()) {
+      compact();
+    }
+  }
+
+  /**
+   * Renumber live documents densely and rebuild the postings from the stored fields
+   */
+  private void compact() {
+    int live = 0;
+    for (int doc = liveDocs.nextSetBit(0); doc >= 0; doc = liveDocs.nextSetBit(doc + 1)) {
+      docUserIds[live] = docUserIds[doc];
+      docFirstNames[live] = docFirstNames[doc];
+      docLastNames[live] = docLastNames[doc];
+      docEmails[live] = docEmails[doc];
+      live++;
+    }
+    Arrays.fill(docFirstNames, live, docCount, null);
+    Arrays.fill(docLastNames, live, docCount, null);
+    Arrays.fill(docEmails, live, docCount, null);
+
+    docCount = live;
+    tombstones = 0;
+    liveDocs.clear();
+    liveDocs.set(0, live);
+    docByUserId.clear();
+    postings.clear();
+    for (int doc = 0; doc < live; doc++) {
+      docByUserId.put(docUserIds[doc], doc);
+      postDocument(doc);
+    }
+    postings.values().forEach(Postings::trim);
+  }
+
+  private static String[] tokenize(String query) {
+    return Arrays.stream(normalize(query).split("[^\\p{L}\\p{N}]+"))
+        .filter(token -> !token.isEmpty())
+        .distinct()
+        .toArray(String[]::new);
+  }
+
+  private static String normalize(String value) {
+    return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private static long gram(char a, char b, char c) {
+    return ((long) a << 32) | ((long) b << 16) | c;
+  }
+
+  private static void siftUp(long[] heap, int i) {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (heap[parent] <= heap[i]) {
+        return;
+      }
+      long tmp = heap[parent];
+      heap[parent] = heap[i];
+      heap[i] = tmp;
+      i = parent;
+    }
+  }
+
+  private static void siftDown(long[] heap, int size) {
+    int i = 0;
+    while (true) {
+      int left = 2 * i + 1;
+      if (left >= size) {
+        return;
+      }
+      int smallest = left + 1 < size && heap[left + 1] < heap[left] ? left + 1 : left;
+      if (heap[i] <= heap[smallest]) {
+        return;
+      }
+      long tmp = heap[smallest];
+      heap[smallest] = heap[i];
+      heap[i] = tmp;
+      i = smallest;
+    }
+  }
+
+  private void withWriteLock(Runnable action) {
+    lock.writeLock().lock();
+    try {
+      action.run();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  /**
+   * Growable, ascending posting list of document ids
+   */
+  private static final class Postings {
+    private int[] docs = new int[4];
+    private int size;
+
+    void add(int doc) {
+      // Documents are appended in id order, so a repeat can only be the last entry
+      if (size > 0 && docs[size - 1] == doc) {
+        return;
+      }
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+      }
+      docs[size++] = doc;
+    }
+
+    void trim() {
+      if (docs.length != size) {
+        docs = Arrays.copyOf(docs, size);
+      }
+    }
+  }
+}
@@ -1,44 +1,68 @@
 package ma.lsia.certis.services;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import ma.lsia.certis.dto.PatchUserRequest;
 import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.dto.UserSearchResponse;
+import ma.lsia.certis.dto.UserSearchResult;
 import ma.lsia.certis.entities.User;
+import ma.lsia.certis.exception.ConflictException;
 import ma.lsia.certis.repos.UserRepository;
 
 @Service
 public class UserService {
+  private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
   private final UserRepository userRepo;
   private final PasswordEncoder passwordEncoder;
+  private final UserSearchIndex searchIndex;
+  private final UserShards shards;
   
-  public UserService(UserRepository userRepo, PasswordEncoder passwordEncoder) {
+  public UserService(UserRepository userRepo, PasswordEncoder passwordEncoder, UserSearchIndex searchIndex,
+      UserShards shards) {
     this.userRepo = userRepo;
     this.passwordEncoder = passwordEncoder;
+    this.searchIndex = searchIndex;
+    this.shards = shards;
   }
   
-  @Transactional
+  // Every method runs in a transaction on the shard holding the user, see UserShards
   public User createUser(RegisterRequest request) {
-    // Check if user already exists
-    if (userRepo.findByEmail(request.getEmail()).isPresent()) {
-      throw new IllegalArgumentException("Email already registered");
-    }
+    return shards.writeByEmail(request.getEmail(), () -> {
+      // Check if user already exists
+      if (userRepo.findByEmail(request.getEmail()).isPresent()) {
+        throw new IllegalArgumentException("Email already registered");
+      }
 
-    // Additional password validation (belt-and-suspenders approach)
-    validatePassword(request.getPassword());
+      // Additional password validation (belt-and-suspenders approach)
+      validatePassword(request.getPassword());
 
-    User user = new User();
-    user.setFirstName(request.getFirstName());
-    user.setLastName(request.getLastName());
-    user.setEmail(request.getEmail());
-    user.setPassword(passwordEncoder.encode(request.getPassword()));
-    
-    return userRepo.save(user);
+      User user = new User();
+      user.setFirstName(request.getFirstName());
+      user.setLastName(request.getLastName());
+      user.setEmail(request.getEmail());
+      user.setPassword(passwordEncoder.encode(request.getPassword()));
+      
+      User saved = userRepo.save(user);
+      searchIndex.index(saved);
+      log.info("User {} registered", saved.getId());
+      return saved;
+    });
   }
 
   private void validatePassword(String password) {
@@ -63,41 +87,134 @@ public class UserService {
     }
   }
 
-  @Transactional(readOnly = true)
   public Optional<User> getUserById(@NonNull Long id) {
-    return userRepo.findById(id);
+    return shards.readById(id, () -> userRepo.findById(id));
   }
 
-  @Transactional(readOnly = true)
   public Optional<User> getUserByEmail(@NonNull String email) {
-    return userRepo.findByEmail(email);
+    return shards.readByEmail(email, () -> userRepo.findByEmail(email));
+  }
+
+  /**
+   * Users with these ids, in no particular order; each shard involved is queried in parallel
+   */
+  public List<User> getUsersByIds(@NonNull Collection<Long> ids) {
+    return shards.readByIds(ids, userRepo::findAllById);
   }
 
-  @Transactional(readOnly = true)
   public Optional<User> getVerifiedUserById(@NonNull Long id) {
-    return userRepo.findByIdAndIsVerifiedIsNotNull(id);
+    return shards.readById(id, () -> userRepo.findByIdAndIsVerifiedIsNotNull(id));
   }
 
-  @Transactional(readOnly = true)
   public Optional<User> getVerifiedUserByEmail(@NonNull String email) {
-    return userRepo.findByEmailAndIsVerifiedIsNotNull(email);
+    return shards.readByEmail(email, () -> userRepo.findByEmailAndIsVerifiedIsNotNull(email));
   }
 
-  @Transactional
-  public void updateLastLogin(@NonNull Long userId) {
-    userRepo.findById(userId).ifPresent(user -> {
-      user.setLastLogin(LocalDateTime.now());
-      userRepo.save(user);
-    });
+  /**
+   * Number of users on each shard, counted in parallel
+   */
+  public List<Long> countUsersPerShard() {
+    return shards.onEveryShard(shard -> List.of(userRepo.count()));
+  }
+
+  public LocalDateTime updateLastLogin(@NonNull Long userId) {
+    LocalDateTime lastLogin = LocalDateTime.now();
+    shards.writeById(userId, () -> userRepo.updateLastLogin(userId, lastLogin));
+    return lastLogin;
+  }
+
+  /**
+   * Point the user at a stored avatar. Like login bookkeeping this leaves the version alone.
+   */
+  public void updateAvatarHash(@NonNull Long userId, @NonNull String avatarHash) {
+    shards.writeById(userId, () -> userRepo.updateAvatarHash(userId, avatarHash, LocalDateTime.now()));
+    log.debug("User {} avatar set to {}", userId, avatarHash);
   }
 
-  @Transactional
   public User updateUser(@NonNull User user) {
-    return userRepo.save(user);
+    return shards.writeById(user.getId(), () -> {
+      User saved = userRepo.save(user);
+      searchIndex.index(saved);
+      return saved;
+    });
+  }
+
+  /**
+   * Apply a partial profile update as one UPDATE guarded by the client's version.
+   * The returned user is built from the given snapshot and is not re-read from the database.
+   */
+  public User patchUser(@NonNull User current, @NonNull PatchUserRequest request) {
+    if (!request.getVersion().equals(current.getVersion())) {
+      throw new ConflictException("User was modified concurrently, reload and retry");
+    }
+
+    String firstName = changedValue(request.getFirstName(), current.getFirstName());
+    String lastName = changedValue(request.getLastName(), current.getLastName());
+    if (firstName == null && lastName == null) {
+      return current;
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    return shards.writeById(current.getId(), () -> {
+      int updated = userRepo.updateProfile(current.getId(), current.getVersion(), firstName, lastName, now);
+      if (updated == 0) {
+        throw new ConflictException("User was modified concurrently, reload and retry");
+      }
+      return patched(current, firstName, lastName, now);
+    });
+  }
+
+  private User patched(User current, String firstName, String lastName, LocalDateTime now) {
+    // Copy instead of mutating: the snapshot may still be managed by the open session
+    User patched = new User();
+    patched.setId(current.getId());
+    patched.setFirstName(firstName != null ? firstName : current.getFirstName());
+    patched.setLastName(lastName != null ? lastName : current.getLastName());
+    patched.setEmail(current.getEmail());
+    patched.setPassword(current.getPassword());
+    patched.setIsVerified(current.getIsVerified());
+    patched.setCreatedAt(current.getCreatedAt());
+    patched.setUpdatedAt(now);
+    patched.setLastLogin(current.getLastLogin());
+    patched.setVersion(current.getVersion() + 1);
+    patched.setAvatarHash(current.getAvatarHash());
+    patched.setShardBucket(current.getShardBucket());
+
+    searchIndex.index(patched);
+    log.debug("User {} patched to version {}", patched.getId(), patched.getVersion());
+    return patched;
+  }
+
+  private static String changedValue(String requested, String existing) {
+    return requested == null || requested.equals(existing) ? null : requested;
   }
 
-  @Transactional
   public void deleteUser(@NonNull Long userId) {
-    userRepo.deleteById(userId);
+    shards.writeById(userId, () -> {
+      userRepo.deleteById(userId);
+      searchIndex.remove(userId);
+      return null;
+    });
+    log.info("User {} deleted", userId);
+  }
+
+  /**
+   * Ranked search by partial first name, last name or email.
+   * Matching runs against the in-memory index; only the requested page is loaded.
+   */
+  public UserSearchResponse searchUsers(@NonNull String query, int page, int size) {
+    UserSearchIndex.Hits hits = searchIndex.search(query, page, size);
+    List<Long> ids = Arrays.stream(hits.userIds()).boxed().toList();
+
+    // findAllById returns rows in arbitrary order, restore the ranking
+    Map<Long, User> usersById = getUsersByIds(ids).stream()
+        .collect(Collectors.toMap(User::getId, Function.identity()));
+    List<UserSearchResult> results = ids.stream()
+        .map(usersById::get)
+        .filter(Objects::nonNull)
+        .map(UserSearchResult::fromUser)
+        .toList();
+
+    return new UserSearchResponse(results, page, size, hits.total());
   }
 }
@@ -0,0 +1,267 @@
+package ma.lsia.certis.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import ma.lsia.certis.datasource.ShardKeys;
+import ma.lsia.certis.exception.ConflictException;
+
+/**
+ * Moves buckets of users between shards while the application keeps serving them.
+ *
+ * Buckets move in batches of datasource.shards.rebalance.batch-buckets. A batch is marked
+ * as moving, which makes its users read-only on every instance once they have refreshed the
+ * shard map; its rows are then copied to the target shard, the buckets are reassigned, and
+ * after another refresh period, when no instance reads from the old shard any more, the
+ * old rows are deleted. Reads are served throughout, writes to a moving batch get 503.
+ *
+ * Rows are selected by their indexed shard_bucket column. Users created before sharding have
+ * IDENTITY ids that do not carry their bucket and would be looked up by id on the wrong
+ * shard once moved, so a rebalance stops before its first move if a bucket holds one.
+ */
+@Service
+public class UserShardRebalancer {
+  private static final Logger log = LoggerFactory.getLogger(UserShardRebalancer.class);
+
+  private static final int COPY_BATCH_SIZE = 500;
+
+  private final UserShards shards;
+  private final AsyncTaskExecutor executor;
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile Progress progress = new Progress(false, 0, 0, 0, null, null, null);
+
+  @Value("${datasource.shards.refresh-interval-ms:5000}")
+  private long refreshIntervalMs;
+
+  @Value("${datasource.shards.rebalance.batch-buckets:32}")
+  private int batchBuckets;
+
+  /**
+   * State of the current or last rebalance
+   */
+  public record Progress(boolean running, int plannedBuckets, int movedBuckets, long copiedUsers,
+      LocalDateTime startedAt, LocalDateTime finishedAt, String error) {}
+
+  public UserShardRebalancer(UserShards shards,
+      @Qualifier("applicationTaskExecutor") AsyncTaskExecutor executor) {
+    this.shards = shards;
+    this.executor = executor;
+  }
+
+  public Progress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Moves that leave every shard with the same number of buckets, give or take one
+   */
+  public Map<Integer, Integer> plan() {
+    int[] counts = shards.bucketsPerShard();
+    Map<Integer, Integer> moves = new LinkedHashMap<>();
+    for (int bucket = 0; bucket < ShardKeys.BUCKETS; bucket++) {
+      int from = shards.shardOfBucket(bucket);
+      int to = 0;
+      for (int shard = 1; shard < counts.length; shard++) {
+        if (counts[shard] < counts[to]) {
+          to = shard;
+        }
+      }
+      if (counts[from] - counts[to] > 1) {
+        moves.put(bucket, to);
+        counts[from]--;
+        counts[to]++;
+      }
+    }
+    return moves;
+  }
+
+  /**
+   * Start moving buckets (bucket to target shard) in the background
+   */
+  public Progress start(Map<Integer, Integer> moves) {
+    claim(moves);
+    try {
+      executor.execute(() -> {
+        try {
+          moveAll(moves);
+        } catch (RuntimeException e) {
+          log.warn("User shard rebalance failed: {}", e.getMessage());
+        } finally {
+          running.set(false);
+        }
+      });
+    } catch (RuntimeException e) {
+      running.set(false);
+      throw e;
+    }
+    return progress;
+  }
+
+  /**
+   * Move buckets (bucket to target shard) and return the number of users copied
+   */
+  public long move(Map<Integer, Integer> moves) {
+    claim(moves);
+    try {
+      return moveAll(moves);
+    } finally {
+      running.set(false);
+    }
+  }
+
+  private void claim(Map<Integer, Integer> moves) {
+    validate(moves);
+    if (!running.compareAndSet(false, true)) {
+      throw new ConflictException("A rebalance is already running");
+    }
+    progress = new Progress(true, moves.size(), 0, 0, LocalDateTime.now(), null, null);
+  }
+
+  private long moveAll(Map<Integer, Integer> moves) {
+    Progress started = progress;
+    int moved = 0;
+    long copied = 0;
+    String error = null;
+    try {
+      // On the rebalance thread for start(): one indexed query per bucket
+      requireBucketIds(moves);
+      // Batches share a target, so that one map update marks or reassigns all of their buckets
+      Map<Integer, List<Integer>> bucketsByTarget = new TreeMap<>();
+      moves.forEach((bucket, target) -> {
+        if (shards.shardOfBucket(bucket) != target) {
+          bucketsByTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(bucket);
+        }
+      });
+      for (Map.Entry<Integer, List<Integer>> entry : bucketsByTarget.entrySet()) {
+        List<Integer> buckets = entry.getValue();
+        for (int from = 0; from < buckets.size(); from += batchBuckets) {
+          List<Integer> batch = buckets.subList(from, Math.min(from + batchBuckets, buckets.size()));
+          copied += moveBatch(batch, entry.getKey());
+          moved += batch.size();
+          progress = new Progress(true, started.plannedBuckets(), moved, copied, started.startedAt(), null, null);
+        }
+      }
+      log.info("User shard rebalance moved {} buckets, {} users; buckets per shard {}", moved, copied,
+          shards.bucketsPerShard());
+      return copied;
+    } catch (RuntimeException e) {
+      error = e.getMessage();
+      throw e;
+    } finally {
+      progress = new Progress(false, started.plannedBuckets(), moved, copied, started.startedAt(),
+          LocalDateTime.now(), error);
+    }
+  }
+
+  private long moveBatch(List<Integer> buckets, int target) {
+    Map<Integer, Integer> sources = new LinkedHashMap<>();
+    for (int bucket : buckets) {
+      sources.put(bucket, shards.shardOfBucket(bucket));
+    }
+
+    shards.updateBuckets(buckets, target, null);
+    long copied = 0;
+    try {
+      // Every instance has seen the mark and finished the writes it had started
+      awaitRefresh();
+      for (int bucket : buckets) {
+        copied += copy(bucket, sources.get(bucket), target);
+      }
+    } catch (RuntimeException e) {
+      for (int bucket : buckets) {
+        deleteBucket(target, bucket);
+      }
+      shards.updateBuckets(buckets, null, null);
+      throw e;
+    }
+    shards.updateBuckets(buckets, null, target);
+
+    // No instance reads the old copies any more
+    awaitRefresh();
+    for (int bucket : buckets) {
+      deleteBucket(sources.get(bucket), bucket);
+    }
+    log.info("Moved buckets {} to {}: {} users", buckets, target, copied);
+    return copied;
+  }
+
+  private long copy(int bucket, int source, int target) {
+    JdbcTemplate from = new JdbcTemplate(shards.pool(source));
+    from.setMaxRows(COPY_BATCH_SIZE);
+    JdbcTemplate to = new JdbcTemplate(shards.pool(target));
+
+    // Leftovers of an interrupted move
+    deleteBucket(target, bucket);
+    long copied = 0;
+    long afterId = -1;
+    List<Map<String, Object>> rows;
+    do {
+      rows = from.queryForList("select * from users where shard_bucket = ? and id > ? order by id", bucket, afterId);
+      if (rows.isEmpty()) {
+        break;
+      }
+      // Every column as it is, version and timestamps included
+      List<String> columns = new ArrayList<>(rows.get(0).keySet());
+      String sql = "insert into users (" + String.join(", ", columns) + ") values ("
+          + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+      to.batchUpdate(sql, rows.stream().map(row -> columns.stream().map(row::get).toArray()).toList());
+      copied += rows.size();
+      afterId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+    } while (rows.size() == COPY_BATCH_SIZE);
+    return copied;
+  }
+
+  private void deleteBucket(int shard, int bucket) {
+    new JdbcTemplate(shards.pool(shard)).update("delete from users where shard_bucket = ?", bucket);
+  }
+
+  private void awaitRefresh() {
+    try {
+      Thread.sleep(2 * refreshIntervalMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while moving buckets", e);
+    }
+  }
+
+  // Users whose id routes elsewhere than their email would be lost to reads by id after the move
+  private void requireBucketIds(Map<Integer, Integer> moves) {
+    for (int bucket : moves.keySet()) {
+      int shard = shards.shardOfBucket(bucket);
+      Map<String, Object> legacy = new JdbcTemplate(shards.pool(shard)).queryForMap(
+          "select count(*) as legacy, min(id) as example from users where shard_bucket = ? and mod(id, ?) <> ?",
+          bucket, ShardKeys.BUCKETS, bucket);
+      long count = ((Number) legacy.get("legacy")).longValue();
+      if (count > 0) {
+        throw new ConflictException(count + " users of bucket " + bucket + " on shard " + shard
+            + " have ids from before sharding (e.g. " + legacy.get("example")
+            + ") that do not carry their bucket; re-key them before rebalancing");
+      }
+    }
+  }
+
+  private void validate(Map<Integer, Integer> moves) {
+    moves.forEach((bucket, target) -> {
+      if (bucket == null || bucket < 0 || bucket >= ShardKeys.BUCKETS) {
+        throw new IllegalArgumentException("bucket must be between 0 and " + (ShardKeys.BUCKETS - 1));
+      }
+      if (target == null || target < 0 || target >= shards.getShardCount()) {
+        throw new IllegalArgumentException("shard must be between 0 and " + (shards.getShardCount() - 1));
+      }
+    });
+  }
+}
@@ -0,0 +1,358 @@
+package ma.lsia.certis.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import ma.lsia.certis.datasource.ShardContext;
+import ma.lsia.certis.datasource.ShardKeys;
+import ma.lsia.certis.datasource.ShardRoutingDataSource;
+import ma.lsia.certis.datasource.ShardSchemaUpdater;
+import ma.lsia.certis.entities.ShardedUserIdGenerator;
+import ma.lsia.certis.entities.UserShardBucket;
+import ma.lsia.certis.exception.ServiceUnavailableException;
+import ma.lsia.certis.repos.UserRepository;
+import ma.lsia.certis.repos.UserShardBucketRepository;
+
+/**
+ * Routes user reads and writes to the shard holding the user's bucket.
+ *
+ * The bucket map is stored in user_shard_buckets on shard 0, created on first start (spread
+ * evenly over the shards if there are no users yet, all on shard 0 otherwise) and re-read
+ * every datasource.shards.refresh-interval-ms so that moves made through another instance
+ * are followed. Writes to a bucket that is being moved fail with 503 until the move is
+ * done. Without datasource.shards.urls there is a single shard and routing is a no-op.
+ */
+@Service
+public class UserShards {
+  private static final Logger log = LoggerFactory.getLogger(UserShards.class);
+
+  private static final int NOT_MOVING = -1;
+  private static final int BACKFILL_BATCH_SIZE = 1000;
+
+  private final UserShardBucketRepository bucketRepo;
+  private final UserRepository userRepo;
+  private final AsyncTaskExecutor executor;
+  private final ShardSchemaUpdater schemaUpdater;
+  private final List<DataSource> pools;
+  private final TransactionTemplate writeTx;
+  private final TransactionTemplate readTx;
+
+  private volatile Assignment assignment;
+
+  /**
+   * Shard of every bucket, and the shard it is moving to or -1
+   */
+  record Assignment(int[] shards, int[] movingTo) {}
+
+  public UserShards(UserShardBucketRepository bucketRepo, UserRepository userRepo, DataSource dataSource,
+      ObjectProvider<ShardRoutingDataSource> routing, ObjectProvider<ShardSchemaUpdater> schemaUpdater,
+      @Qualifier("applicationTaskExecutor") AsyncTaskExecutor executor, PlatformTransactionManager transactionManager) {
+    this.bucketRepo = bucketRepo;
+    this.userRepo = userRepo;
+    this.executor = executor;
+    this.schemaUpdater = schemaUpdater.getIfAvailable();
+    ShardRoutingDataSource shards = routing.getIfAvailable();
+    this.pools = shards == null
+        ? List.of(dataSource)
+        : IntStream.range(0, shards.getShardCount()).mapToObj(shards::getShard).toList();
+    this.writeTx = new TransactionTemplate(transactionManager);
+    this.readTx = new TransactionTemplate(transactionManager);
+    this.readTx.setReadOnly(true);
+  }
+
+  @PostConstruct
+  void init() {
+    if (schemaUpdater != null) {
+      for (int shard = 1; shard < pools.size(); shard++) {
+        schemaUpdater.update(shard);
+      }
+    }
+    backfillBuckets();
+    skipLegacyIds();
+    if (pools.size() == 1) {
+      // Nothing to route or move; the map is created once shards are configured
+      assignment = new Assignment(new int[ShardKeys.BUCKETS], notMoving());
+      return;
+    }
+    assignment = loadOrCreate();
+    log.info("Users sharded over {} shards, buckets per shard {}", pools.size(), bucketsPerShard());
+  }
+
+  /**
+   * Fill shard_bucket for rows written before the column existed; a no-op once they all have it
+   */
+  void backfillBuckets() {
+    for (DataSource pool : pools) {
+      JdbcTemplate jdbc = new JdbcTemplate(pool);
+      jdbc.setMaxRows(BACKFILL_BATCH_SIZE);
+      List<Map<String, Object>> rows;
+      do {
+        rows = jdbc.queryForList("select id, email from users where shard_bucket is null order by id");
+        if (rows.isEmpty()) {
+          break;
+        }
+        jdbc.batchUpdate("update users set shard_bucket = ? where id = ?", rows.stream()
+            .map(row -> new Object[] {ShardKeys.bucketOf((String) row.get("email")), row.get("id")})
+            .toList());
+      } while (rows.size() == BACKFILL_BATCH_SIZE);
+    }
+  }
+
+  /**
+   * Keep new ids clear of IDENTITY ids from before sharding that look like this shard's own
+   */
+  void skipLegacyIds() {
+    for (int shard = 0; shard < pools.size(); shard++) {
+      Long maxId = new JdbcTemplate(pools.get(shard)).queryForObject(
+          "select max(id) from users where mod(id / ?, ?) = ?", Long.class,
+          ShardKeys.BUCKETS, ShardKeys.MAX_SHARDS, shard);
+      if (maxId != null) {
+        ShardedUserIdGenerator.skipIdsUpTo(shard, maxId);
+      }
+    }
+  }
+
+  /**
+   * Re-read the bucket map, picking up moves made by any instance
+   */
+  @Scheduled(fixedDelayString = "${datasource.shards.refresh-interval-ms:5000}")
+  public void refresh() {
+    if (pools.size() == 1) {
+      return;
+    }
+    try {
+      assignment = toAssignment(inTransaction(0, readTx, bucketRepo::findAll));
+    } catch (DataAccessException | IllegalStateException e) {
+      log.warn("Could not refresh the user shard map, keeping the current one: {}", e.getMessage());
+    }
+  }
+
+  public int getShardCount() {
+    return pools.size();
+  }
+
+  public int shardOfBucket(int bucket) {
+    return assignment.shards()[bucket];
+  }
+
+  public int shardOfEmail(String email) {
+    return shardOfBucket(ShardKeys.bucketOf(email));
+  }
+
+  public int shardOfId(long userId) {
+    return shardOfBucket(ShardKeys.bucketOf(userId));
+  }
+
+  /**
+   * Read-only transaction on the shard holding this email
+   */
+  public <T> T readByEmail(String email, Supplier<T> work) {
+    return inTransaction(shardOfEmail(email), readTx, work);
+  }
+
+  public <T> T readById(long userId, Supplier<T> work) {
+    return inTransaction(shardOfId(userId), readTx, work);
+  }
+
+  /**
+   * Transaction on the shard holding this email, refused while its bucket is being moved
+   */
+  public <T> T writeByEmail(String email, Supplier<T> work) {
+    return write(ShardKeys.bucketOf(email), work);
+  }
+
+  public <T> T writeById(long userId, Supplier<T> work) {
+    return write(ShardKeys.bucketOf(userId), work);
+  }
+
+  /**
+   * Split ids by shard and load each group in parallel, in one read-only transaction per shard
+   */
+  public <T> List<T> readByIds(Collection<Long> userIds, Function<List<Long>, List<T>> load) {
+    Map<Integer, List<Long>> idsByShard = new LinkedHashMap<>();
+    for (Long userId : userIds) {
+      idsByShard.computeIfAbsent(shardOfId(userId), shard -> new ArrayList<>()).add(userId);
+    }
+    return fanOut(idsByShard.keySet(),
+        shard -> readTx.execute(status -> load.apply(idsByShard.get(shard))));
+  }
+
+  /**
+   * Run on every shard in parallel and concatenate the results, shard 0 first. Each call
+   * runs with its shard set but outside any transaction.
+   */
+  public <T> List<T> onEveryShard(IntFunction<List<T>> work) {
+    return fanOut(IntStream.range(0, pools.size()).boxed().toList(), work);
+  }
+
+  /**
+   * Whether the user's bucket is on this shard and not being moved, so that its row may be
+   * changed there directly; for jobs that work through a shard rather than through writeById
+   */
+  public boolean isWritableOn(int shard, long userId) {
+    int bucket = ShardKeys.bucketOf(userId);
+    Assignment current = assignment;
+    return current.shards()[bucket] == shard && current.movingTo()[bucket] == NOT_MOVING;
+  }
+
+  /**
+   * Buckets per shard in the current map
+   */
+  public int[] bucketsPerShard() {
+    int[] counts = new int[pools.size()];
+    for (int shard : assignment.shards()) {
+      counts[shard]++;
+    }
+    return counts;
+  }
+
+  /**
+   * Buckets currently being moved
+   */
+  public List<Integer> movingBuckets() {
+    int[] movingTo = assignment.movingTo();
+    return IntStream.range(0, movingTo.length).filter(bucket -> movingTo[bucket] != NOT_MOVING).boxed().toList();
+  }
+
+  // For UserShardRebalancer
+
+  DataSource pool(int shard) {
+    return pools.get(shard);
+  }
+
+  /**
+   * Set or clear the target of a bucket move in the shared map, optionally assigning the
+   * bucket to that shard, and apply it here at once
+   */
+  void updateBuckets(Collection<Integer> buckets, Integer movingTo, Integer shard) {
+    LocalDateTime now = LocalDateTime.now();
+    inTransaction(0, writeTx, () -> {
+      List<UserShardBucket> rows = bucketRepo.findAllById(buckets);
+      for (UserShardBucket row : rows) {
+        if (shard != null) {
+          row.setShard(shard);
+        }
+        row.setMovingTo(movingTo);
+        row.setUpdatedAt(now);
+      }
+      return bucketRepo.saveAll(rows);
+    });
+    refresh();
+  }
+
+  private <T> T write(int bucket, Supplier<T> work) {
+    Assignment current = assignment;
+    if (current.movingTo()[bucket] != NOT_MOVING) {
+      throw new ServiceUnavailableException("This account is being moved to another shard, retry shortly");
+    }
+    return inTransaction(current.shards()[bucket], writeTx, work);
+  }
+
+  private static <T> T inTransaction(int shard, TransactionTemplate tx, Supplier<T> work) {
+    return ShardContext.call(shard, () -> tx.execute(status -> work.get()));
+  }
+
+  private <T> List<T> fanOut(Collection<Integer> shards, IntFunction<List<T>> work) {
+    if (shards.size() == 1) {
+      int shard = shards.iterator().next();
+      return ShardContext.call(shard, () -> work.apply(shard));
+    }
+
+    List<Future<List<T>>> results = new ArrayList<>();
+    for (int shard : shards) {
+      results.add(executor.submit(() -> ShardContext.call(shard, () -> work.apply(shard))));
+    }
+    List<T> merged = new ArrayList<>();
+    for (Future<List<T>> result : results) {
+      try {
+        merged.addAll(result.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        results.forEach(pending -> pending.cancel(true));
+        throw new IllegalStateException("Interrupted while querying shards", e);
+      } catch (ExecutionException e) {
+        results.forEach(pending -> pending.cancel(true));
+        if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    return merged;
+  }
+
+  private Assignment loadOrCreate() {
+    // The map lives on shard 0
+    List<UserShardBucket> rows = inTransaction(0, readTx, bucketRepo::findAll);
+    if (rows.isEmpty()) {
+      // Spreading existing users would strand them on shard 0, so they stay there until rebalanced
+      boolean noUsers = inTransaction(0, readTx, () -> userRepo.count() == 0);
+      LocalDateTime now = LocalDateTime.now();
+      List<UserShardBucket> created = IntStream.range(0, ShardKeys.BUCKETS)
+          .mapToObj(bucket -> new UserShardBucket(bucket, noUsers ? bucket % pools.size() : 0, null, now))
+          .toList();
+      try {
+        inTransaction(0, writeTx, () -> bucketRepo.saveAll(created));
+        log.info("Created the user shard map: {} buckets {}", ShardKeys.BUCKETS,
+            noUsers ? "spread over " + pools.size() + " shards" : "on shard 0");
+      } catch (DataAccessException e) {
+        log.info("User shard map created concurrently, loading it: {}", e.getMessage());
+      }
+      rows = inTransaction(0, readTx, bucketRepo::findAll);
+    }
+    return toAssignment(rows);
+  }
+
+  private Assignment toAssignment(List<UserShardBucket> rows) {
+    int[] shards = new int[ShardKeys.BUCKETS];
+    int[] movingTo = notMoving();
+    Arrays.fill(shards, NOT_MOVING);
+    for (UserShardBucket row : rows) {
+      int bucket = row.getBucket();
+      if (bucket < 0 || bucket >= ShardKeys.BUCKETS || row.getShard() < 0 || row.getShard() >= pools.size()) {
+        throw new IllegalStateException("Bucket " + bucket + " is on shard " + row.getShard() + ", but "
+            + pools.size() + " shards are configured");
+      }
+      shards[bucket] = row.getShard();
+      movingTo[bucket] = row.getMovingTo() == null ? NOT_MOVING : row.getMovingTo();
+    }
+    for (int bucket = 0; bucket < shards.length; bucket++) {
+      if (shards[bucket] == NOT_MOVING) {
+        throw new IllegalStateException("Bucket " + bucket + " is missing from the user shard map");
+      }
+    }
+    return new Assignment(shards, movingTo);
+  }
+
+  private static int[] notMoving() {
+    int[] movingTo = new int[ShardKeys.BUCKETS];
+    Arrays.fill(movingTo, NOT_MOVING);
+    return movingTo;
+  }
+}
@@ -0,0 +1,145 @@
+package ma.lsia.certis.util;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Writes a file to the response with ETag revalidation and single byte-range support.
+ *
+ * On Tomcat the body is handed to the connector's sendfile support, so the kernel copies
+ * the file to the socket without it passing through the JVM heap. Elsewhere it falls back
+ * to FileChannel.transferTo into the servlet output stream.
+ */
+public final class FileResponseWriter {
+  private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private static final long[] UNSATISFIABLE = new long[0];
+
+  private FileResponseWriter() {
+  }
+
+  /**
+   * @param etag quoted entity tag, e.g. {@code "\"<hash>\""}
+   * @param cacheControl Cache-Control value sent with both full and conditional responses
+   */
+  public static void write(HttpServletRequest request, HttpServletResponse response, Path file, long length,
+      String contentType, String etag, String cacheControl) throws IOException {
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+      response.setStatus(HttpStatus.NOT_MODIFIED.value());
+      return;
+    }
+
+    long start = 0;
+    long end = length - 1;
+    String range = request.getHeader(HttpHeaders.RANGE);
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    // A stale If-Range means the client's partial copy is of another version: send it all
+    if (range != null && (ifRange == null || ifRange.equals(etag))) {
+      long[] bounds = parseRange(range, length);
+      if (bounds == UNSATISFIABLE) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        return;
+      }
+      if (bounds != null) {
+        start = bounds[0];
+        end = bounds[1];
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+      }
+    }
+
+    long count = end - start + 1;
+    response.setContentType(contentType);
+    response.setContentLengthLong(count);
+    if ("HEAD".equals(request.getMethod())) {
+      return;
+    }
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+      request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, end + 1); // exclusive
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      while (position <= end) {
+        position += channel.transferTo(position, end + 1 - position, out);
+      }
+    }
+  }
+
+  /**
+   * Parse a single {@code bytes=} range. Returns null when the header should be ignored
+   * (malformed or multiple ranges, in which case the whole file is sent) and
+   * {@link #UNSATISFIABLE} when it lies entirely past the end of the file.
+   */
+  private static long[] parseRange(String header, long length) {
+    if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+      return null;
+    }
+    String spec = header.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+
+    try {
+      String first = spec.substring(0, dash).trim();
+      String last = spec.substring(dash + 1).trim();
+      if (first.isEmpty()) {
+        // Suffix range: the last N bytes
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0) {
+          return UNSATISFIABLE;
+        }
+        return new long[] {Math.max(0, length - suffix), length - 1};
+      }
+
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+      if (start >= length) {
+        return UNSATISFIABLE;
+      }
+      return start <= end ? new long[] {start, end} : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(etag) || tag.equals("*")) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
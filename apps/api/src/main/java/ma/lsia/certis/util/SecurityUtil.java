@@ -5,9 +5,29 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import ma.lsia.certis.security.AuthenticatedUser;
+
 @Component
 public class SecurityUtil {
 
+  /**
+   * Get the principal of the currently authenticated user
+   * @return authenticated user, or null if not authenticated
+   */
+  public static AuthenticatedUser getCurrentUser() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    if (authentication == null || !authentication.isAuthenticated()) {
+      return null;
+    }
+
+    if (authentication.getPrincipal() instanceof AuthenticatedUser user) {
+      return user;
+    }
+
+    return null;
+  }
+
   /**
    * Get the email of the currently authenticated user
    * @return email of authenticated user, or null if not authenticated
@@ -20,6 +40,9 @@ public class SecurityUtil {
     }
 
     Object principal = authentication.getPrincipal();
+    if (principal instanceof AuthenticatedUser) {
+      return ((AuthenticatedUser) principal).email();
+    }
     if (principal instanceof UserDetails) {
       return ((UserDetails) principal).getUsername();
     }
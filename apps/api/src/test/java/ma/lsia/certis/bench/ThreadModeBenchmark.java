@@ -0,0 +1,192 @@
+package ma.lsia.certis.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ma.lsia.certis.CertisApplication;
+import ma.lsia.certis.jfr.VirtualThreadPinningMonitor;
+
+/**
+ * Compares platform and virtual thread request handling on /auth/login (BCrypt bound) and
+ * /users/me (JDBC bound) at rising concurrency. Not part of the regular test run:
+ *
+ * <pre>
+ * ./mvnw test -Dtest=ThreadModeBenchmark -Dbenchmark.concurrency=1,16,64,256,1024 -Dbenchmark.seconds=10
+ * </pre>
+ *
+ * Each mode gets its own application on a random port and a fresh in-memory database, with
+ * the JIT warm-up on and load shedding off so that only the threading model differs. The
+ * load generator shares the machine with the server, so compare the two modes with each
+ * other rather than with production figures. Login errors at high concurrency are 503s
+ * from hashes that waited longer than auth.password-hashing.acquire-timeout-ms.
+ */
+class ThreadModeBenchmark {
+  private static final String PASSWORD = "Benchmark1!";
+
+  private final int[] concurrencyLevels = Arrays.stream(
+      System.getProperty("benchmark.concurrency", "1,16,64,256,1024").split(","))
+      .mapToInt(level -> Integer.parseInt(level.trim()))
+      .toArray();
+  private final Duration measured = Duration.ofSeconds(Long.getLong("benchmark.seconds", 10));
+  private final Duration warmup = Duration.ofSeconds(Long.getLong("benchmark.warmup-seconds", 3));
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private record Result(String mode, String endpoint, int concurrency, double throughput, double p50Ms,
+      double p99Ms, long errors) {}
+
+  private record Sample(long[] latencies, int count, long errors) {}
+
+  @Test
+  void compareThreadModes() throws Exception {
+    List<Result> results = new ArrayList<>();
+    for (boolean virtual : new boolean[] {false, true}) {
+      results.addAll(run(virtual));
+    }
+
+    System.out.printf("%n%-9s %-10s %11s %10s %10s %10s %8s%n", "mode", "endpoint", "concurrency", "req/s",
+        "p50 ms", "p99 ms", "errors");
+    for (Result result : results) {
+      System.out.printf("%-9s %-10s %11d %10.1f %10.2f %10.2f %8d%n", result.mode(), result.endpoint(),
+          result.concurrency(), result.throughput(), result.p50Ms(), result.p99Ms(), result.errors());
+    }
+  }
+
+  private List<Result> run(boolean virtual) throws Exception {
+    String mode = virtual ? "virtual" : "platform";
+    // As arguments, since default properties would lose to application.properties
+    try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CertisApplication.class)
+        .run(
+            "--server.port=0",
+            "--spring.threads.virtual.enabled=" + virtual,
+            "--spring.datasource.url=jdbc:h2:mem:bench-" + mode + ";DB_CLOSE_DELAY=-1",
+            "--concurrency.limit.enabled=false",
+            "--logging.level.root=WARN");
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build()) {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      URI base = URI.create("http://localhost:" + port);
+
+      String email = "bench-" + UUID.randomUUID() + "@example.com";
+      String credentials = objectMapper.writeValueAsString(Map.of("email", email, "password", PASSWORD));
+      send(http, post(base.resolve("/auth/register"), objectMapper.writeValueAsString(Map.of(
+          "email", email, "password", PASSWORD, "firstName", "Bench", "lastName", "Mark"))));
+      HttpResponse<String> login = send(http, post(base.resolve("/auth/login"), credentials));
+      String token = objectMapper.readTree(login.body()).get("token").asText();
+
+      HttpRequest loginRequest = post(base.resolve("/auth/login"), credentials);
+      HttpRequest meRequest = HttpRequest.newBuilder(base.resolve("/users/me"))
+          .header("Authorization", "Bearer " + token)
+          .GET()
+          .build();
+
+      List<Result> results = new ArrayList<>();
+      for (int concurrency : concurrencyLevels) {
+        results.add(measure(http, mode, "login", loginRequest, concurrency));
+        results.add(measure(http, mode, "users/me", meRequest, concurrency));
+      }
+
+      if (virtual) {
+        context.getBeanProvider(VirtualThreadPinningMonitor.class)
+            .ifAvailable(monitor -> System.out.println("Pinned call sites: " + monitor.getSites()));
+      }
+      return results;
+    }
+  }
+
+  private Result measure(HttpClient http, String mode, String endpoint, HttpRequest request, int concurrency)
+      throws Exception {
+    drive(http, request, concurrency, warmup);
+    List<Sample> samples = drive(http, request, concurrency, measured);
+
+    int total = samples.stream().mapToInt(Sample::count).sum();
+    long[] latencies = new long[total];
+    int offset = 0;
+    long errors = 0;
+    for (Sample sample : samples) {
+      System.arraycopy(sample.latencies(), 0, latencies, offset, sample.count());
+      offset += sample.count();
+      errors += sample.errors();
+    }
+    Arrays.sort(latencies);
+    Function<Integer, Double> percentile = p -> total == 0
+        ? 0.0
+        : latencies[Math.max(0, (int) Math.ceil(p / 100.0 * total) - 1)] / 1_000_000.0;
+    return new Result(mode, endpoint, concurrency, (total - errors) / (double) measured.toSeconds(),
+        percentile.apply(50), percentile.apply(99), errors);
+  }
+
+  // Closed loop: each worker sends its next request as soon as the previous one is answered
+  private List<Sample> drive(HttpClient http, HttpRequest request, int concurrency, Duration duration)
+      throws Exception {
+    long deadline = System.nanoTime() + duration.toNanos();
+    List<Future<Sample>> workers = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < concurrency; i++) {
+        workers.add(executor.submit(() -> {
+          long[] latencies = new long[1024];
+          int count = 0;
+          long errors = 0;
+          while (System.nanoTime() < deadline) {
+            long started = System.nanoTime();
+            boolean ok;
+            try {
+              ok = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (Exception e) {
+              ok = false;
+            }
+            if (count == latencies.length) {
+              latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - started;
+            if (!ok) {
+              errors++;
+            }
+          }
+          return new Sample(latencies, count, errors);
+        }));
+      }
+    }
+
+    List<Sample> samples = new ArrayList<>();
+    for (Future<Sample> worker : workers) {
+      samples.add(worker.get());
+    }
+    return samples;
+  }
+
+  private static HttpRequest post(URI uri, String json) {
+    return HttpRequest.newBuilder(uri)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(json))
+        .build();
+  }
+
+  private static HttpResponse<String> send(HttpClient http, HttpRequest request) throws Exception {
+    HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() >= 400) {
+      throw new IllegalStateException(request.uri() + " answered " + response.statusCode() + ": " + response.body());
+    }
+    return response;
+  }
+}
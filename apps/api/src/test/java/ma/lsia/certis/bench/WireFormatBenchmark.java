@@ -0,0 +1,120 @@
+package ma.lsia.certis.bench;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import ma.lsia.certis.dto.AuthResponse;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.dto.UserResponse;
+
+/**
+ * Compares JSON, CBOR and Smile on the payloads service-to-service callers exchange: size on
+ * the wire and the time to write and read each one. Not part of the regular test run:
+ *
+ * <pre>
+ * ./mvnw test -Dtest=WireFormatBenchmark -Dbenchmark.iterations=200000
+ * </pre>
+ *
+ * The mappers are configured like the application's converters. Timings are per operation,
+ * single threaded, after a warm-up of the same length; the JWT inside AuthResponse is an
+ * opaque string to every format, so it shrinks least.
+ */
+class WireFormatBenchmark {
+  private final int iterations = Integer.getInteger("benchmark.iterations", 200_000);
+
+  private record Payload(String name, Object value) {}
+
+  private record Result(String payload, String format, int bytes, double writeNs, double readNs) {}
+
+  @Test
+  void compareWireFormats() throws Exception {
+    Map<String, ObjectMapper> formats = new LinkedHashMap<>();
+    formats.put("json", Jackson2ObjectMapperBuilder.json().build());
+    formats.put("cbor", Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build());
+    formats.put("smile", Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build());
+
+    UserResponse user = new UserResponse(4_295_032_833L, "Amina", "El Idrissi", "amina.elidrissi@example.com",
+        LocalDateTime.of(2026, 3, 2, 9, 15, 30, 123_456_000), LocalDateTime.of(2026, 3, 1, 18, 2, 11, 654_321_000),
+        LocalDateTime.of(2026, 10, 18, 7, 45, 0, 987_000_000), 12L,
+        "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+    List<Payload> payloads = List.of(
+        new Payload("AuthResponse", new AuthResponse(token(), user)),
+        new Payload("UserResponse", user),
+        new Payload("RegisterRequest", new RegisterRequest("Amina", "El Idrissi", "amina.elidrissi@example.com",
+            "Str0ng!Passw0rd")));
+
+    List<Result> results = new ArrayList<>();
+    for (Payload payload : payloads) {
+      for (Map.Entry<String, ObjectMapper> format : formats.entrySet()) {
+        results.add(measure(payload, format.getKey(), format.getValue()));
+      }
+    }
+
+    System.out.printf("%n%-16s %-6s %7s %8s %10s %10s %9s%n", "payload", "format", "bytes", "vs json", "write ns",
+        "read ns", "vs json");
+    Result json = null;
+    for (Result result : results) {
+      if (result.format().equals("json")) {
+        json = result;
+      }
+      System.out.printf("%-16s %-6s %7d %7.0f%% %10.0f %10.0f %8.0f%%%n", result.payload(), result.format(),
+          result.bytes(), 100.0 * result.bytes() / json.bytes(), result.writeNs(), result.readNs(),
+          100.0 * (result.writeNs() + result.readNs()) / (json.writeNs() + json.readNs()));
+    }
+  }
+
+  private Result measure(Payload payload, String format, ObjectMapper mapper) throws Exception {
+    Class<?> type = payload.value().getClass();
+    byte[] encoded = mapper.writeValueAsBytes(payload.value());
+    if (!mapper.readValue(encoded, type).getClass().equals(type)) {
+      throw new IllegalStateException(format + " did not round-trip " + payload.name());
+    }
+
+    // Twice: the first pass is the warm-up
+    long writeNanos = 0;
+    long readNanos = 0;
+    long sink = 0;
+    for (int pass = 0; pass < 2; pass++) {
+      long started = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += mapper.writeValueAsBytes(payload.value()).length;
+      }
+      writeNanos = System.nanoTime() - started;
+
+      started = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += mapper.readValue(encoded, type).hashCode();
+      }
+      readNanos = System.nanoTime() - started;
+    }
+    if (sink == 42) {
+      System.out.println(sink);
+    }
+    return new Result(payload.name(), format, encoded.length, (double) writeNanos / iterations,
+        (double) readNanos / iterations);
+  }
+
+  // Shaped like an EdDSA-signed access token
+  private static String token() {
+    Random random = new Random(42);
+    Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+    byte[] claims = new byte[160];
+    byte[] signature = new byte[64];
+    random.nextBytes(claims);
+    random.nextBytes(signature);
+    return base64.encodeToString("{\"alg\":\"EdDSA\",\"kid\":\"ed25519-2026\"}".getBytes()) + "."
+        + base64.encodeToString(claims) + "." + base64.encodeToString(signature);
+  }
+}
@@ -0,0 +1,80 @@
+package ma.lsia.certis.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import ma.lsia.certis.dto.AuthResponse;
+import ma.lsia.certis.dto.LoginRequest;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.dto.UserResponse;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "warmup.enabled=false")
+class CertisClientEncodingTests {
+  private static final String PASSWORD = "Encoded1!";
+
+  @LocalServerPort
+  private int port;
+
+  @ParameterizedTest
+  @EnumSource(value = CertisClient.Encoding.class, names = {"CBOR", "SMILE"})
+  void exchangesBodiesInTheChosenEncoding(CertisClient.Encoding encoding) {
+    String email = encoding.name().toLowerCase() + "@example.com";
+    try (CertisClient client = CertisClient.builder(URI.create("http://localhost:" + port))
+        .encoding(encoding)
+        .credentials(email, PASSWORD)
+        .build()) {
+      UserResponse registered = client.register(new RegisterRequest("Binary", "Caller", email, PASSWORD));
+      AuthResponse login = client.login(new LoginRequest(email, PASSWORD));
+      UserResponse me = client.getCurrentUser();
+
+      assertEquals(registered.getId(), login.getUser().getId());
+      assertEquals(email, me.getEmail());
+      assertEquals(login.getUser().getCreatedAt(), me.getCreatedAt());
+
+      CertisClientException duplicate = assertThrows(CertisClientException.class,
+          () -> client.register(new RegisterRequest("Binary", "Caller", email, PASSWORD)));
+      assertEquals(400, duplicate.getStatus());
+      assertEquals("Email already registered", duplicate.getMessage());
+    }
+  }
+
+  @Test
+  void answersErrorsInTheEncodingOfTheRequestBodyWithoutAnAcceptHeader() throws Exception {
+    CBORMapper cbor = new CBORMapper();
+    Map<String, String> invalid = Map.of("email", "not-an-email", "password", "x");
+
+    HttpResponse<byte[]> binary = register("application/cbor", cbor.writeValueAsBytes(invalid));
+    assertEquals(400, binary.statusCode());
+    assertEquals("application/cbor", binary.headers().firstValue("Content-Type").orElseThrow());
+    assertEquals("Validation Failed", cbor.readTree(binary.body()).get("error").asText());
+
+    HttpResponse<byte[]> json = register("application/json", new ObjectMapper().writeValueAsBytes(invalid));
+    assertEquals(400, json.statusCode());
+    assertEquals("application/json", json.headers().firstValue("Content-Type").orElseThrow());
+  }
+
+  private HttpResponse<byte[]> register(String contentType, byte[] body) throws Exception {
+    try (HttpClient http = HttpClient.newHttpClient()) {
+      HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/auth/register"))
+          .header("Content-Type", contentType)
+          .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+          .build();
+      return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package ma.lsia.certis.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ma.lsia.certis.dto.UserResponse;
+
+/**
+ * Runs the client against a stub of the API that counts logins and refreshes
+ */
+class CertisClientTests {
+  private HttpServer server;
+  private CertisClient client;
+  private final AtomicInteger logins = new AtomicInteger();
+  private final AtomicInteger refreshes = new AtomicInteger();
+  private volatile long tokenLifetimeSeconds = 3600;
+  private volatile String rejectedToken;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/auth/login", exchange -> {
+      logins.incrementAndGet();
+      sleep(100); // slow enough for every concurrent caller to pile up behind it
+      respond(exchange, 200, authResponse(token()));
+    });
+    server.createContext("/auth/refresh", exchange -> {
+      refreshes.incrementAndGet();
+      respond(exchange, 200, authResponse(token()));
+    });
+    server.createContext("/users/me", exchange -> {
+      String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+      if (authorization == null || authorization.substring(7).equals(rejectedToken)) {
+        respond(exchange, 403, "{\"status\":403,\"error\":\"Forbidden\",\"message\":\"User not authenticated\"}");
+      } else {
+        respond(exchange, 200, "{\"id\":1,\"email\":\"svc@certis.io\",\"version\":0}");
+      }
+    });
+    server.start();
+
+    client = CertisClient.builder(URI.create("http://localhost:" + server.getAddress().getPort()))
+        .credentials("svc@certis.io", "Secret1!")
+        .refreshSkew(Duration.ofSeconds(60))
+        .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.close();
+    server.stop(0);
+  }
+
+  @Test
+  void concurrentCallersShareOneLogin() throws Exception {
+    int callers = 50;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<UserResponse>> results = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < callers; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return client.getCurrentUser();
+        }));
+      }
+      start.countDown();
+      for (Future<UserResponse> result : results) {
+        assertEquals(1L, result.get().getId());
+      }
+    }
+
+    assertEquals(1, logins.get());
+    assertEquals(0, refreshes.get());
+  }
+
+  @Test
+  void refreshesProactivelyBeforeExpiry() throws Exception {
+    // Inside the 60 s refresh window from the start
+    tokenLifetimeSeconds = 30;
+    String first = client.accessToken();
+
+    client.getCurrentUser();
+    // The stub counts the refresh before the client has stored its result
+    waitFor(() -> !first.equals(client.accessToken()));
+
+    assertEquals(1, logins.get());
+    assertTrue(refreshes.get() >= 1);
+    assertNotEquals(first, client.accessToken());
+  }
+
+  @Test
+  void logsInAgainWhenTheTokenIsRejected() {
+    rejectedToken = client.accessToken();
+
+    assertEquals(1L, client.getCurrentUser().getId());
+    assertEquals(2, logins.get());
+  }
+
+  @Test
+  void failsWithoutCredentials() {
+    try (CertisClient anonymous = CertisClient.builder(
+        URI.create("http://localhost:" + server.getAddress().getPort())).build()) {
+      CertisClientException e = assertThrows(CertisClientException.class, anonymous::getCurrentUser);
+      assertEquals(401, e.getStatus());
+    }
+  }
+
+  private String token() {
+    long now = System.currentTimeMillis() / 1000;
+    String payload = "{\"sub\":\"svc@certis.io\",\"jti\":\"" + System.nanoTime()
+        + "\",\"iat\":" + now + ",\"exp\":" + (now + tokenLifetimeSeconds) + "}";
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+        + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".sig";
+  }
+
+  private static String authResponse(String token) {
+    return "{\"token\":\"" + token + "\",\"type\":\"Bearer\",\"user\":{\"id\":1,\"email\":\"svc@certis.io\"}}";
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    exchange.getRequestBody().readAllBytes();
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+}
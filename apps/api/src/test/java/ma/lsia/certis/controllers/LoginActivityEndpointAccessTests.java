@@ -0,0 +1,53 @@
+package ma.lsia.certis.controllers;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import ma.lsia.certis.dto.LoginRequest;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.services.AuthService;
+import ma.lsia.certis.services.UserService;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:logins-access;DB_CLOSE_DELAY=-1",
+    "security.roles.staff-emails=staff@example.com",
+    "security.roles.admin-emails=admin@example.com",
+    "warmup.enabled=false"
+})
+@AutoConfigureMockMvc
+class LoginActivityEndpointAccessTests {
+  private static final String PASSWORD = "Logins1!x";
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private AuthService authService;
+
+  @Test
+  void onlyAdminsReachTheLoginActivityEndpoint() throws Exception {
+    userService.createUser(new RegisterRequest("Staff", "Member", "staff@example.com", PASSWORD));
+    userService.createUser(new RegisterRequest("Admin", "Member", "admin@example.com", PASSWORD));
+
+    mvc.perform(get("/actuator/logins")).andExpect(status().isForbidden());
+    mvc.perform(get("/actuator/logins").header("Authorization", "Bearer " + token("staff@example.com")))
+        .andExpect(status().isForbidden());
+
+    mvc.perform(get("/actuator/logins").header("Authorization", "Bearer " + token("admin@example.com")))
+        .andExpect(status().isOk());
+    mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+  }
+
+  private String token(String email) {
+    return authService.login(new LoginRequest(email, PASSWORD)).getToken();
+  }
+}
@@ -0,0 +1,155 @@
+package ma.lsia.certis.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.jayway.jsonpath.JsonPath;
+
+import ma.lsia.certis.dto.LoginRequest;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.services.AuthService;
+import ma.lsia.certis.services.UserService;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:avatars;DB_CLOSE_DELAY=-1",
+    "avatars.max-bytes=1024",
+    "warmup.enabled=false"
+})
+@AutoConfigureMockMvc
+class UserAvatarTests {
+  private static final String PASSWORD = "Avatar1!x";
+  private static final byte[] PNG = png(40);
+
+  @TempDir
+  static Path avatars;
+
+  @DynamicPropertySource
+  static void avatarsDir(DynamicPropertyRegistry registry) {
+    registry.add("avatars.dir", () -> avatars.toString());
+  }
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private AuthService authService;
+
+  private User user;
+  private String token;
+
+  @BeforeEach
+  void createUser() {
+    String email = "avatar-" + System.nanoTime() + "@example.com";
+    user = userService.createUser(new RegisterRequest("Avatar", "Owner", email, PASSWORD));
+    token = authService.login(new LoginRequest(email, PASSWORD)).getToken();
+  }
+
+  @Test
+  void rejectsUnsupportedTypesAndOversizedUploads() throws Exception {
+    mvc.perform(upload("text/plain", "hello".getBytes()))
+        .andExpect(status().isUnsupportedMediaType());
+    mvc.perform(upload("image/png", png(2048)))
+        .andExpect(status().isPayloadTooLarge());
+    mvc.perform(get("/users/{id}/avatar", user.getId())).andExpect(status().isNotFound());
+  }
+
+  @Test
+  void rejectsContentThatDoesNotMatchTheDeclaredType() throws Exception {
+    mvc.perform(upload("image/jpeg", PNG))
+        .andExpect(status().isUnsupportedMediaType());
+  }
+
+  @Test
+  void servesByteRanges() throws Exception {
+    store();
+
+    mvc.perform(get("/users/{id}/avatar", user.getId()))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+        .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+        .andExpect(content().bytes(PNG));
+
+    mvc.perform(get("/users/{id}/avatar", user.getId()).header(HttpHeaders.RANGE, "bytes=10-19"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/40"))
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+        .andExpect(content().bytes(Arrays.copyOfRange(PNG, 10, 20)));
+
+    mvc.perform(get("/users/{id}/avatar", user.getId()).header(HttpHeaders.RANGE, "bytes=-5"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 35-39/40"))
+        .andExpect(content().bytes(Arrays.copyOfRange(PNG, 35, 40)));
+
+    mvc.perform(get("/users/{id}/avatar", user.getId()).header(HttpHeaders.RANGE, "bytes=40-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */40"));
+  }
+
+  @Test
+  void revalidatesWithTheEntityTag() throws Exception {
+    String hash = store();
+    String etag = "\"" + hash + "\"";
+
+    mvc.perform(get("/users/{id}/avatar", user.getId()))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+    byte[] body = mvc.perform(get("/users/{id}/avatar", user.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, etag))
+        .andReturn().getResponse().getContentAsByteArray();
+    assertArrayEquals(new byte[0], body);
+
+    mvc.perform(get("/users/{id}/avatar", user.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+        .andExpect(status().isOk());
+  }
+
+  private String store() throws Exception {
+    String json = mvc.perform(upload("image/png", PNG))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.avatarHash").isString())
+        .andReturn().getResponse().getContentAsString();
+    return JsonPath.read(json, "$.avatarHash");
+  }
+
+  private MockHttpServletRequestBuilder upload(String contentType, byte[] body) {
+    return put("/users/me/avatar")
+        .header("Authorization", "Bearer " + token)
+        .contentType(contentType)
+        .content(body);
+  }
+
+  // The PNG signature followed by distinct filler bytes, so a wrong range shows in the body
+  private static byte[] png(int length) {
+    byte[] bytes = new byte[length];
+    byte[] signature = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+    for (int i = 0; i < length; i++) {
+      bytes[i] = i < signature.length ? signature[i] : (byte) i;
+    }
+    return bytes;
+  }
+}
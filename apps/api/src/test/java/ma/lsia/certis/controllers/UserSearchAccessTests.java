@@ -0,0 +1,59 @@
+package ma.lsia.certis.controllers;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import ma.lsia.certis.dto.LoginRequest;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.services.AuthService;
+import ma.lsia.certis.services.UserService;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:search-access;DB_CLOSE_DELAY=-1",
+    "security.roles.staff-emails=support@example.com",
+    "warmup.enabled=false"
+})
+@AutoConfigureMockMvc
+class UserSearchAccessTests {
+  private static final String PASSWORD = "Search1!x";
+
+  @Autowired
+  private MockMvc mvc;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private AuthService authService;
+
+  @Test
+  void onlyStaffSearchAndSeeMaskedEmails() throws Exception {
+    userService.createUser(new RegisterRequest("Augustin", "Searched", "augustin@example.com", PASSWORD));
+    userService.createUser(new RegisterRequest("Support", "Agent", "support@example.com", PASSWORD));
+
+    mvc.perform(get("/users/search").param("q", "augustin")
+            .header("Authorization", "Bearer " + token("augustin@example.com")))
+        .andExpect(status().isForbidden());
+    mvc.perform(get("/users/search").param("q", "augustin"))
+        .andExpect(status().isForbidden());
+
+    mvc.perform(get("/users/search").param("q", "augustin")
+            .header("Authorization", "Bearer " + token("support@example.com")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.results[0].firstName").value("Augustin"))
+        .andExpect(jsonPath("$.results[0].maskedEmail").value("a***@example.com"))
+        .andExpect(jsonPath("$.results[0].email").doesNotExist())
+        .andExpect(jsonPath("$.results[0].lastLogin").doesNotExist());
+  }
+
+  private String token(String email) {
+    return authService.login(new LoginRequest(email, PASSWORD)).getToken();
+  }
+}
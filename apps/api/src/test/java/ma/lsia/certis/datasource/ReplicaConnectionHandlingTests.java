@@ -0,0 +1,75 @@
+package ma.lsia.certis.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import ma.lsia.certis.entities.JobCheckpoint;
+import ma.lsia.certis.repos.JobCheckpointRepository;
+
+/**
+ * A request that reads on the replica and then writes, with the session open for the whole
+ * request as open-in-view keeps it
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:handling-primary;DB_CLOSE_DELAY=-1",
+    "datasource.replicas.urls=jdbc:h2:mem:handling-replica;DB_CLOSE_DELAY=-1",
+    "datasource.replicas.sticky-window-ms=0",
+    "warmup.enabled=false"
+})
+@DirtiesContext
+class ReplicaConnectionHandlingTests {
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ReplicaRoutingDataSource routing;
+
+  @Autowired
+  private JobCheckpointRepository checkpointRepo;
+
+  @Test
+  void writesAfterAReplicaReadGoToThePrimary() {
+    routing.refreshReplicaLag("");
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+    // What OpenEntityManagerInViewInterceptor binds at the start of a request
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+    try {
+      String readFrom = readOnly.execute(status -> (String) entityManager
+          .createNativeQuery("select database()")
+          .getSingleResult());
+      assertEquals("HANDLING-REPLICA", readFrom.toUpperCase());
+
+      readWrite.executeWithoutResult(status -> checkpointRepo.save(
+          new JobCheckpoint("replica-handling", 42L, LocalDateTime.now())));
+    } finally {
+      TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+      entityManager.close();
+    }
+
+    DataSource primary = (DataSource) routing.getResolvedDataSources().get(ReplicaRoutingDataSource.PRIMARY);
+    assertEquals(1, new JdbcTemplate(primary).queryForObject(
+        "select count(*) from job_checkpoints where name = 'replica-handling'", Integer.class));
+  }
+}
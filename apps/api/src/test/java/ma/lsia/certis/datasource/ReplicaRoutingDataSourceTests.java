@@ -0,0 +1,94 @@
+package ma.lsia.certis.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReplicaRoutingDataSourceTests {
+
+  private ReplicaRoutingDataSource routing;
+  private JdbcTemplate jdbc;
+  private TransactionTemplate readWrite;
+  private TransactionTemplate readOnly;
+
+  @BeforeEach
+  void setUp() {
+    // Two independent H2 databases that tell apart which one answered
+    DataSource primary = h2("routing-primary");
+    DataSource replica = h2("routing-replica");
+
+    routing = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replica),
+        new ReadYourWritesTracker(1000), 1000, new SimpleMeterRegistry());
+    routing.afterPropertiesSet();
+
+    DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    jdbc = new JdbcTemplate(dataSource);
+    readWrite = new TransactionTemplate(transactionManager);
+    readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void readOnlyTransactionsGoToReplica() {
+    assertEquals("routing-replica", readOnly.execute(status -> whoAmI()));
+  }
+
+  @Test
+  void readWriteTransactionsGoToPrimary() {
+    assertEquals("routing-primary", readWrite.execute(status -> whoAmI()));
+  }
+
+  @Test
+  void readsAfterWriteInSameRequestStayOnPrimary() {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+    readWrite.execute(status -> whoAmI());
+
+    assertEquals("routing-primary", readOnly.execute(status -> whoAmI()));
+  }
+
+  @Test
+  void laggingReplicaIsSkipped() {
+    routing.refreshReplicaLag("SELECT 5000");
+    assertEquals("routing-primary", readOnly.execute(status -> whoAmI()));
+
+    routing.refreshReplicaLag("SELECT 10");
+    assertEquals("routing-replica", readOnly.execute(status -> whoAmI()));
+  }
+
+  private String whoAmI() {
+    return jdbc.queryForObject("SELECT name FROM whoami", String.class);
+  }
+
+  private static DataSource h2(String name) {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    jdbc.execute("CREATE TABLE IF NOT EXISTS whoami (name VARCHAR(50))");
+    jdbc.execute("DELETE FROM whoami");
+    jdbc.update("INSERT INTO whoami VALUES (?)", name);
+    return dataSource;
+  }
+}
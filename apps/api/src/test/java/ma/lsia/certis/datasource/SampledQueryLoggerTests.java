@@ -0,0 +1,43 @@
+package ma.lsia.certis.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+class SampledQueryLoggerTests {
+
+  @Test
+  void redactsTextParameters() throws Exception {
+    QueryInfo query = new QueryInfo("insert into users (email, password, created_at, id) values (?, ?, ?, ?)");
+    query.getParametersList().add(List.of(
+        set("setString", String.class, 1, "ada@example.com"),
+        set("setString", String.class, 2, "$2a$10$abcdefghijklmnopqrstuv"),
+        set("setTimestamp", Timestamp.class, 3, Timestamp.valueOf("2026-10-19 10:00:00")),
+        set("setLong", long.class, 4, 66225L)));
+    ExecutionInfo execution = new ExecutionInfo();
+    execution.setStatementType(StatementType.PREPARED);
+    execution.setSuccess(true);
+
+    String entry = new SampledQueryLogger(1.0, 200).entry(execution, List.of(query));
+
+    assertFalse(entry.contains("ada@example.com"), entry);
+    assertFalse(entry.contains("$2a$10$"), entry);
+    assertTrue(entry.contains("66225"), entry);
+    assertTrue(entry.contains("2026-10-19"), entry);
+  }
+
+  private static ParameterSetOperation set(String method, Class<?> type, int index, Object value) throws Exception {
+    return new ParameterSetOperation(PreparedStatement.class.getMethod(method, int.class, type),
+        new Object[] {index, value});
+  }
+}
@@ -0,0 +1,72 @@
+package ma.lsia.certis.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTests {
+  private static final long MS = 1_000_000L;
+
+  @Test
+  void rejectsOnceTheLimitIsReached() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1.5, 0.2);
+
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+
+    limiter.release(10 * MS, false);
+    assertTrue(limiter.tryAcquire());
+  }
+
+  @Test
+  void growsWhileLatencyIsSteady() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 1.5, 0.2);
+
+    for (int i = 0; i < 200; i++) {
+      saturateAndRelease(limiter, 10 * MS);
+    }
+
+    assertEquals(100, limiter.getLimit());
+  }
+
+  @Test
+  void shrinksWhenLatencyRises() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, 1.5, 0.2);
+    for (int i = 0; i < 3; i++) {
+      saturateAndRelease(limiter, 10 * MS);
+    }
+    int before = limiter.getLimit();
+
+    // Requests start queueing behind a slow dependency
+    saturateAndRelease(limiter, 200 * MS);
+
+    assertTrue(limiter.getLimit() < before / 2, "limit " + limiter.getLimit() + " vs " + before);
+  }
+
+  @Test
+  void backsOffOnFailures() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 5, 100, 1.5, 0.2);
+
+    for (int i = 0; i < 100; i++) {
+      limiter.tryAcquire();
+      limiter.release(10 * MS, true);
+    }
+
+    assertEquals(5, limiter.getLimit());
+  }
+
+  // Fill every slot so samples count as limit-bound, then release one with the given latency
+  private static void saturateAndRelease(AdaptiveConcurrencyLimiter limiter, long rttNanos) {
+    int acquired = 0;
+    while (limiter.tryAcquire()) {
+      acquired++;
+    }
+    limiter.release(rttNanos, false);
+    for (int i = 1; i < acquired; i++) {
+      limiter.release(rttNanos, false);
+    }
+  }
+}
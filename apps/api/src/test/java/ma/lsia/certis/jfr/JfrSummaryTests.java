@@ -0,0 +1,54 @@
+package ma.lsia.certis.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+
+class JfrSummaryTests {
+
+  @Test
+  void groupsRecordedEventsByKind(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("test.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(LoginEvent.class).withThreshold(Duration.ZERO);
+      recording.enable(RepositoryEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+
+      for (int i = 0; i < 3; i++) {
+        LoginEvent login = new LoginEvent();
+        login.begin();
+        login.outcome = i == 0 ? LoginEvent.WRONG_PASSWORD : LoginEvent.SUCCESS;
+        login.commit();
+      }
+      RepositoryEvent query = new RepositoryEvent();
+      query.begin();
+      query.repository = "JfrSummaryTests";
+      query.query = "findByEmail";
+      query.rows = 1;
+      query.commit();
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<JfrSummary.Row> rows = JfrSummary.summarize(file);
+
+    // the recording is JVM-wide: scheduled tasks of cached test contexts may add repository rows
+    Map<String, Long> counts = rows.stream()
+        .filter(row -> !row.event().equals("Repository") || row.key().startsWith("JfrSummaryTests."))
+        .collect(Collectors.toMap(row -> row.event() + " " + row.key(), JfrSummary.Row::count));
+    assertEquals(Map.of("Login success", 2L, "Login wrong-password", 1L,
+        "Repository JfrSummaryTests.findByEmail", 1L), counts);
+    rows.forEach(row -> assertTrue(row.p50() <= row.p99() && row.p99() <= row.max()));
+  }
+}
@@ -0,0 +1,93 @@
+package ma.lsia.certis.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import ma.lsia.certis.exception.ServiceUnavailableException;
+
+class BoundedPasswordEncoderTests {
+
+  @Test
+  void neverHashesMoreThanTheLimitAtOnce() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    PasswordEncoder slow = new StubEncoder(() -> {
+      peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+      sleep(20);
+      running.decrementAndGet();
+    });
+    BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slow, 3, 10_000);
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        results.add(executor.submit(() -> encoder.matches("secret", "hash")));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    }
+    assertEquals(3, peak.get());
+  }
+
+  @Test
+  void givesUpAfterTheAcquireTimeout() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new StubEncoder(() -> {
+      started.countDown();
+      await(release);
+    }), 1, 50);
+
+    Thread holder = Thread.ofVirtual().start(() -> encoder.encode("secret"));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertThrows(ServiceUnavailableException.class, () -> encoder.matches("secret", "hash"));
+    release.countDown();
+    holder.join();
+    assertTrue(encoder.matches("secret", "hash"));
+  }
+
+  private record StubEncoder(Runnable work) implements PasswordEncoder {
+    @Override
+    public String encode(CharSequence rawPassword) {
+      work.run();
+      return "hash";
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      work.run();
+      return true;
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package ma.lsia.certis.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+
+class JwtKeyStoreTests {
+  @TempDir
+  Path dir;
+
+  private JwtKeyStore keyStore;
+  private JwtUtil jwtUtil;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    keyStore = new JwtKeyStore(dir.toString(), "", true);
+    keyStore.init();
+    jwtUtil = new JwtUtil(keyStore);
+    ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+    jwtUtil.init();
+  }
+
+  @Test
+  void generatesAKeyAndSignsWithItsKid() {
+    String token = jwtUtil.generateToken("a@example.com", 1L);
+
+    assertEquals("a@example.com", jwtUtil.parseClaims(token).getSubject());
+    assertEquals(keyStore.signingKey().kid(), kid(token));
+    assertEquals("EdDSA", keyStore.signingKey().algorithm().getId());
+  }
+
+  @Test
+  void rotatesToANewerPairAndRetiresTheOldOne() throws Exception {
+    String oldKid = keyStore.signingKey().kid();
+    String oldToken = jwtUtil.generateToken("a@example.com", 1L);
+
+    KeyPair pair = ecPair();
+    write("es256-next", pair);
+    Files.setLastModifiedTime(dir.resolve("es256-next.key"), FileTime.from(Instant.now().plusSeconds(60)));
+    keyStore.reloadIfChanged();
+
+    String newToken = jwtUtil.generateToken("a@example.com", 1L);
+    assertEquals("es256-next", kid(newToken));
+    assertEquals("ES256", keyStore.signingKey().algorithm().getId());
+    assertEquals("a@example.com", jwtUtil.parseClaims(oldToken).getSubject());
+    assertEquals(List.of(oldKid, "es256-next"), kids(keyStore.jwks()));
+
+    Files.delete(dir.resolve(oldKid + ".key"));
+    Files.delete(dir.resolve(oldKid + ".pub"));
+    keyStore.reloadIfChanged();
+
+    assertThrows(JwtException.class, () -> jwtUtil.parseClaims(oldToken));
+    assertEquals("a@example.com", jwtUtil.parseClaims(newToken).getSubject());
+  }
+
+  @Test
+  void keepsTheCurrentKeysWhenTheDirectoryBreaks() throws Exception {
+    String kid = keyStore.signingKey().kid();
+    Files.writeString(dir.resolve(kid + ".pub"), "-----BEGIN PUBLIC KEY-----\nbm90IGEga2V5\n-----END PUBLIC KEY-----\n");
+    keyStore.reloadIfChanged();
+
+    assertEquals(kid, keyStore.signingKey().kid());
+    assertEquals("a@example.com", jwtUtil.parseClaims(jwtUtil.generateToken("a@example.com", 1L)).getSubject());
+  }
+
+  @Test
+  void rejectsATokenWhoseAlgorithmDoesNotMatchItsKey() throws Exception {
+    KeyPair pair = ecPair();
+    write("other", pair);
+    keyStore.reloadIfChanged();
+    // An HS256 token naming a public key as its kid must not verify
+    String forged = Jwts.builder()
+        .header().keyId("other").and()
+        .subject("a@example.com")
+        .signWith(Jwts.SIG.HS256.key().build())
+        .compact();
+
+    assertThrows(JwtException.class, () -> jwtUtil.parseClaims(forged));
+  }
+
+  private void write(String kid, KeyPair pair) throws Exception {
+    Files.writeString(dir.resolve(kid + ".pub"), pem("PUBLIC KEY", pair.getPublic().getEncoded()));
+    Files.writeString(dir.resolve(kid + ".key"), pem("PRIVATE KEY", pair.getPrivate().getEncoded()));
+  }
+
+  private static KeyPair ecPair() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    return generator.generateKeyPair();
+  }
+
+  private static String pem(String type, byte[] der) {
+    return "-----BEGIN " + type + "-----\n" + Base64.getMimeEncoder().encodeToString(der) + "\n-----END " + type
+        + "-----\n";
+  }
+
+  private static String kid(String token) {
+    String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+    return header.replaceAll(".*\"kid\":\"([^\"]+)\".*", "$1");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> kids(Map<String, Object> jwks) {
+    return ((List<Map<String, Object>>) jwks.get("keys")).stream()
+        .map(jwk -> (String) jwk.get("kid"))
+        .toList();
+  }
+}
@@ -0,0 +1,90 @@
+package ma.lsia.certis.security;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ma.lsia.certis.entities.RevokedToken;
+import ma.lsia.certis.repos.RevokedTokenRepository;
+
+class TokenRevocationListTests {
+  private static final long HOUR_MS = 3_600_000L;
+
+  private RevokedTokenRepository repo;
+  private TokenRevocationList revocations;
+
+  @BeforeEach
+  void setUp() {
+    repo = mock(RevokedTokenRepository.class);
+    revocations = new TokenRevocationList(repo);
+    ReflectionTestUtils.setField(revocations, "expirationMs", 24 * HOUR_MS);
+    ReflectionTestUtils.setField(revocations, "expectedPerHour", 100);
+  }
+
+  @Test
+  void rebuildsFromDatabaseAtStartup() {
+    long expiresAt = System.currentTimeMillis() + HOUR_MS;
+    when(repo.findByExpiresAtAfter(any())).thenReturn(List.of(
+        new RevokedToken("loaded", 1L, Instant.ofEpochMilli(expiresAt), Instant.now())));
+
+    revocations.afterSingletonsInstantiated();
+
+    assertTrue(revocations.isRevoked("loaded", expiresAt));
+    assertFalse(revocations.isRevoked("other", expiresAt));
+  }
+
+  @Test
+  void separatesTokensByExpiryHour() {
+    revocations.afterSingletonsInstantiated();
+    long now = System.currentTimeMillis();
+
+    for (int i = 0; i < 1000; i++) {
+      revocations.revoke("jti-" + i, now + (i % 20 + 1) * HOUR_MS);
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(revocations.isRevoked("jti-" + i, now + (i % 20 + 1) * HOUR_MS));
+    }
+    // Unknown ids fall through the filter or the exact set
+    for (int i = 0; i < 1000; i++) {
+      assertFalse(revocations.isRevoked(UUID.randomUUID().toString(), now + (i % 20 + 1) * HOUR_MS));
+    }
+    assertFalse(revocations.isRevoked(null, now + HOUR_MS));
+  }
+
+  @Test
+  void keepsTokensExpiringBeyondTheRing() {
+    revocations.afterSingletonsInstantiated();
+    long now = System.currentTimeMillis();
+    long near = now + HOUR_MS;
+    // Same ring slot as near, but a different live hour
+    long far = near + 32 * HOUR_MS;
+
+    revocations.revoke("near", near);
+    revocations.revoke("far", far);
+
+    assertTrue(revocations.isRevoked("near", near));
+    assertTrue(revocations.isRevoked("far", far));
+  }
+
+  @Test
+  void ignoresAlreadyExpiredTokens() {
+    revocations.afterSingletonsInstantiated();
+    long expired = System.currentTimeMillis() - 1;
+
+    revocations.revoke("expired", expired);
+    revocations.evictExpired();
+
+    assertFalse(revocations.isRevoked("expired", expired));
+  }
+}
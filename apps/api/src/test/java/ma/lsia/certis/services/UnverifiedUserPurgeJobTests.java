@@ -0,0 +1,43 @@
+package ma.lsia.certis.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.entities.User;
+
+// purge.unverified.enabled keeps its default
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:purge-unverified;DB_CLOSE_DELAY=-1",
+    "purge.unverified.dry-run=true",
+    "warmup.enabled=false"
+})
+class UnverifiedUserPurgeJobTests {
+  @Autowired
+  private UnverifiedUserPurgeJob purgeJob;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  @Test
+  void keepsStaleUnverifiedUsersWhileDisabledOrDryRun() {
+    User user = userService.createUser(new RegisterRequest("Stale", "Account", "stale@example.com", "Purged1!x"));
+    jdbc.update("update users set created_at = ? where id = ?", LocalDateTime.now().minusDays(30), user.getId());
+
+    purgeJob.scheduledRun();
+    assertTrue(userService.getUserById(user.getId()).isPresent(), "disabled by default");
+
+    assertEquals(1, purgeJob.run());
+    assertTrue(userService.getUserById(user.getId()).isPresent(), "a dry run only counts");
+  }
+}
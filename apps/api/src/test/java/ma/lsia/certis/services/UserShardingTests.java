@@ -0,0 +1,170 @@
+package ma.lsia.certis.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.persistence.EntityManagerFactory;
+import ma.lsia.certis.datasource.ShardKeys;
+import ma.lsia.certis.dto.RegisterRequest;
+import ma.lsia.certis.entities.User;
+import ma.lsia.certis.exception.ConflictException;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:sharding-0;DB_CLOSE_DELAY=-1",
+    "datasource.shards.urls=jdbc:h2:mem:sharding-1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:sharding-2;DB_CLOSE_DELAY=-1",
+    "datasource.shards.refresh-interval-ms=100",
+    "warmup.enabled=false"
+})
+// The shard map refresh runs every 100 ms; stop it with the context
+@DirtiesContext
+class UserShardingTests {
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserShards shards;
+
+  @Autowired
+  private UserShardRebalancer rebalancer;
+
+  @Autowired
+  private UnverifiedUserPurgeJob purgeJob;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Test
+  void routesEveryUserToTheShardOfItsEmail() {
+    assertTrue(rebalancer.plan().isEmpty(), "a fresh map is already balanced");
+
+    List<User> users = IntStream.range(0, 60)
+        .mapToObj(i -> userService.createUser(register("routed-" + i + "@example.com")))
+        .toList();
+    for (User user : users) {
+      assertEquals(ShardKeys.bucketOf(user.getEmail()), ShardKeys.bucketOf(user.getId()));
+      assertEquals(user.getId(), userService.getUserByEmail(user.getEmail()).orElseThrow().getId());
+      assertEquals(user.getEmail(), userService.getUserById(user.getId()).orElseThrow().getEmail());
+      assertEquals(1, count(shards.shardOfId(user.getId()), user.getId()));
+    }
+
+    assertEquals(60, userService.getUsersByIds(users.stream().map(User::getId).toList()).size());
+    List<Long> perShard = userService.countUsersPerShard();
+    assertEquals(3, perShard.size());
+    assertTrue(perShard.stream().allMatch(count -> count > 0), "users on every shard: " + perShard);
+  }
+
+  @Test
+  void movesABucketAndKeepsItsUsers() {
+    User user = userService.createUser(register("moving@example.com"));
+    int bucket = ShardKeys.bucketOf(user.getId());
+    int from = shards.shardOfBucket(bucket);
+    int to = (from + 1) % shards.getShardCount();
+
+    assertTrue(rebalancer.move(Map.of(bucket, to)) >= 1);
+
+    assertEquals(to, shards.shardOfBucket(bucket));
+    assertEquals(0, count(from, user.getId()));
+    assertEquals(1, count(to, user.getId()));
+    assertEquals(user.getEmail(), userService.getUserById(user.getId()).orElseThrow().getEmail());
+    userService.updateLastLogin(user.getId());
+    assertNotNull(userService.getUserByEmail(user.getEmail()).orElseThrow().getLastLogin());
+  }
+
+  @Test
+  void keepsUsersFromBeforeShardingInPlace() {
+    String legacyEmail = emailOnShard(0, "legacy");
+    int bucket = ShardKeys.bucketOf(legacyEmail);
+    // An IDENTITY id, whose low bits are not the bucket of its email, in a row without shard_bucket
+    long legacyId = ShardKeys.userId(1000, 0, (bucket + 1) % ShardKeys.BUCKETS);
+    JdbcTemplate shard0 = new JdbcTemplate(shards.pool(0));
+    shard0.update("insert into users (id, first_name, last_name, email, password, version)"
+        + " values (?, 'Legacy', 'User', ?, 'legacy-hash', 0)", legacyId, legacyEmail);
+    try {
+      shards.backfillBuckets();
+      assertEquals(bucket, shard0.queryForObject("select shard_bucket from users where id = ?", Integer.class,
+          legacyId));
+      shards.skipLegacyIds();
+      User created = userService.createUser(register(emailOnShard(0, "fresh")));
+      assertEquals(0, shards.shardOfId(created.getId()));
+      assertTrue(ShardKeys.sequenceOf(created.getId()) > 1000, "id " + created.getId() + " may repeat a legacy one");
+
+      ConflictException refused = assertThrows(ConflictException.class, () -> rebalancer.move(Map.of(bucket, 1)));
+      assertTrue(refused.getMessage().contains(String.valueOf(legacyId)), refused.getMessage());
+      assertEquals(0, shards.shardOfBucket(bucket));
+      assertEquals(1, count(0, legacyId));
+    } finally {
+      shard0.update("delete from users where id = ?", legacyId);
+    }
+  }
+
+  @Test
+  void purgeSkipsUsersOfAMovingBucket() {
+    User user = userService.createUser(register("stale-moving@example.com"));
+    int bucket = ShardKeys.bucketOf(user.getId());
+    int from = shards.shardOfBucket(bucket);
+    int to = (from + 1) % shards.getShardCount();
+    new JdbcTemplate(shards.pool(from)).update("update users set created_at = ? where id = ?",
+        LocalDateTime.now().minusDays(30), user.getId());
+    // Marked as the rebalancer does before copying the bucket
+    shards.updateBuckets(List.of(bucket), to, null);
+    ReflectionTestUtils.setField(purgeJob, "pauseMs", 0L);
+    try {
+      assertEquals(0, purgeJob.run());
+      assertEquals(1, count(from, user.getId()));
+    } finally {
+      shards.updateBuckets(List.of(bucket), null, null);
+    }
+
+    assertEquals(1, purgeJob.run());
+    assertEquals(0, count(from, user.getId()));
+    assertFalse(userService.getUserById(user.getId()).isPresent());
+  }
+
+  @Test
+  void logsSqlOfTheShardedDataSource() {
+    DataSource jpaDataSource = ((EntityManagerFactoryInfo) entityManagerFactory).getDataSource();
+    assertInstanceOf(ProxyDataSource.class, jpaDataSource);
+    assertSame(dataSource, jpaDataSource);
+  }
+
+  private String emailOnShard(int shard, String prefix) {
+    return IntStream.range(0, 100)
+        .mapToObj(i -> prefix + "-" + i + "@example.com")
+        .filter(email -> shards.shardOfEmail(email) == shard)
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private int count(int shard, long userId) {
+    return new JdbcTemplate(shards.pool(shard)).queryForObject("select count(*) from users where id = ?",
+        Integer.class, userId);
+  }
+
+  private static RegisterRequest register(String email) {
+    return new RegisterRequest("Test", "User", email, "Sharded1!");
+  }
+}
@@ -0,0 +1,61 @@
+package ma.lsia.certis.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import ma.lsia.certis.dto.PatchUserRequest;
+import ma.lsia.certis.entities.User;
+
+/**
+ * A users table created before the version column existed, with a row already in it
+ */
+@SpringBootTest(properties = "warmup.enabled=false")
+class UserVersionMigrationTests {
+  private static final String URL = "jdbc:h2:mem:legacy-users;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private JdbcTemplate jdbc;
+
+  @DynamicPropertySource
+  static void legacySchema(DynamicPropertyRegistry registry) throws SQLException {
+    try (Connection connection = DriverManager.getConnection(URL, "root", "");
+        Statement statement = connection.createStatement()) {
+      statement.execute("create table users (id bigint generated by default as identity primary key,"
+          + " first_name varchar(50), last_name varchar(50), email varchar(255) unique, password varchar(255),"
+          + " is_verified timestamp(6), created_at timestamp(6), updated_at timestamp(6), last_login timestamp(6))");
+      statement.execute("insert into users (first_name, last_name, email, password, created_at, updated_at)"
+          + " values ('Legacy', 'Row', 'legacy@example.com', '$2a$10$legacyhashlegacyhashlegacyhash', current_timestamp, current_timestamp)");
+    }
+    registry.add("spring.datasource.url", () -> URL);
+  }
+
+  @Test
+  void rowsFromBeforeTheVersionColumnUpdateInPlace() {
+    User legacy = userService.getUserByEmail("legacy@example.com").orElseThrow();
+    assertEquals(0, legacy.getVersion());
+
+    legacy.setLastName("Saved");
+    User saved = userService.updateUser(legacy);
+    assertEquals(legacy.getId(), saved.getId());
+    assertEquals(1, saved.getVersion());
+
+    User patched = userService.patchUser(saved, new PatchUserRequest(null, "Patched", 1L));
+    assertEquals(2, patched.getVersion());
+    assertEquals(1, jdbc.queryForObject("select count(*) from users", Integer.class));
+    assertEquals("Patched", jdbc.queryForObject("select last_name from users", String.class));
+  }
+}
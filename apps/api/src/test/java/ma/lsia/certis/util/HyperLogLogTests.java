@@ -0,0 +1,54 @@
+package ma.lsia.certis.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTests {
+  @Test
+  void estimatesWithinAFewPercent() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (long id = 1; id <= 100_000; id++) {
+      sketch.offer(id);
+      sketch.offer(id); // Repeats do not count
+    }
+
+    assertEquals(100_000, sketch.estimate(), 3_000);
+  }
+
+  @Test
+  void mergeCountsTheUnion() {
+    HyperLogLog monday = new HyperLogLog();
+    HyperLogLog tuesday = new HyperLogLog();
+    for (long id = 0; id < 30_000; id++) {
+      monday.offer(id);
+      tuesday.offer(id + 20_000);
+    }
+    monday.merge(tuesday);
+
+    assertEquals(50_000, monday.estimate(), 1_500);
+  }
+
+  @Test
+  void roundTripsSparseAndDense() {
+    HyperLogLog small = new HyperLogLog();
+    for (long id = 0; id < 100; id++) {
+      small.offer(id);
+    }
+    HyperLogLog large = new HyperLogLog();
+    for (long id = 0; id < 200_000; id++) {
+      large.offer(id);
+    }
+
+    byte[] sparse = small.toBytes();
+    byte[] dense = large.toBytes();
+    assertTrue(sparse.length < 400, "sparse encoding is " + sparse.length + " bytes");
+    assertEquals(3 + 12 * 1024, dense.length);
+    assertArrayEquals(sparse, HyperLogLog.fromBytes(sparse).toBytes());
+    assertArrayEquals(dense, HyperLogLog.fromBytes(dense).toBytes());
+    assertEquals(small.estimate(), HyperLogLog.fromBytes(sparse).estimate());
+    assertEquals(large.estimate(), HyperLogLog.fromBytes(dense).estimate());
+  }
+}